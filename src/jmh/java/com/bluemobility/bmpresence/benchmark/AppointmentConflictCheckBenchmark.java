@@ -0,0 +1,136 @@
+package com.bluemobility.bmpresence.benchmark;
+
+import com.bluemobility.bmpresence.BmpresenceApplication;
+import com.bluemobility.bmpresence.exception.AppointmentConflictException;
+import com.bluemobility.bmpresence.model.PresenceAppointment;
+import com.bluemobility.bmpresence.service.PresenceAppointmentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The default booking conflict check, in the database, as run by
+ * {@link PresenceAppointmentService#create} with the in-memory index
+ * disabled. The application is started against the dataset written by the
+ * load test generator (an H2 file database by default, see Load Testing in
+ * the README), so generate it first:
+ *
+ * <pre>
+ * ./mvnw -Ploadtest test-compile exec:java@generate-data \
+ *     -Dexec.args="--users 2000 --resources 200 --appointments 300000"
+ * ./mvnw -Pbenchmark test-compile exec:exec -Dbenchmark.include=AppointmentConflictCheckBenchmark
+ * </pre>
+ *
+ * <p>Every booking conflicts with an existing single appointment of the same
+ * subject and resource, sampled from the dataset, so each operation runs the
+ * whole check and is rejected before anything is written.
+ * {@code singleDay} books that day; {@code weeklySeries} books a weekly
+ * series of {@code occurrences} starting on it, whose appointments are read
+ * for the whole span before the first conflicting day is reported.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AppointmentConflictCheckBenchmark {
+
+    private static final int PROBES = 10_000;
+
+    @Param("jdbc:h2:file:./target/loadtest/bmpresence;MODE=MySQL;AUTO_SERVER=TRUE")
+    private String dbUrl;
+
+    @Param({ "26" })
+    private int occurrences;
+
+    private ConfigurableApplicationContext context;
+    private PresenceAppointmentService appointmentService;
+    private List<Probe> probes;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BmpresenceApplication.class).run(
+                "--spring.datasource.url=" + dbUrl,
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--appointments.conflict-index.enabled=false",
+                "--server.port=0",
+                // The default SQL logging would dominate the measurement
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+        appointmentService = context.getBean(PresenceAppointmentService.class);
+
+        // Every 7th single appointment, with the first of its resources
+        probes = context.getBean(JdbcTemplate.class).query(
+                "SELECT a.Subject, MIN(r.ResourceId), a.StartTime FROM PresenceAppointments a "
+                        + "JOIN PresenceAppointmentResources r ON r.AppointmentId = a.Id "
+                        + "WHERE a.Active = TRUE AND a.RecurrenceRule IS NULL AND MOD(a.Id, 7) = 0 "
+                        + "GROUP BY a.Id, a.Subject, a.StartTime ORDER BY a.Id LIMIT " + PROBES,
+                (rs, rowNum) -> new Probe(rs.getString(1), rs.getInt(2),
+                        rs.getTimestamp(3).toLocalDateTime()));
+        if (probes.isEmpty()) {
+            throw new IllegalStateException("No appointments in " + dbUrl + ": generate the load test dataset first");
+        }
+        random = new SplittableRandom(7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object singleDay() {
+        return book(null);
+    }
+
+    @Benchmark
+    public Object weeklySeries() {
+        return book("FREQ=WEEKLY;COUNT=" + occurrences);
+    }
+
+    private Object book(String recurrenceRule) {
+        Probe probe = probes.get(random.nextInt(probes.size()));
+        // Late in the day, so it conflicts by sharing the day rather than the hours
+        LocalDateTime start = probe.startTime().toLocalDate().atTime(22, 0);
+        PresenceAppointment appointment = new PresenceAppointment();
+        appointment.setSubject(probe.subject());
+        appointment.setStartTime(start);
+        appointment.setEndTime(start.plusHours(1));
+        appointment.setRecurrenceRule(recurrenceRule);
+        appointment.setResourceIds(List.of(probe.resourceId()));
+        appointment.setActive(true);
+        try {
+            return appointmentService.create(appointment);
+        } catch (AppointmentConflictException e) {
+            return e;
+        }
+    }
+
+    private record Probe(String subject, Integer resourceId, LocalDateTime startTime) {
+    }
+}
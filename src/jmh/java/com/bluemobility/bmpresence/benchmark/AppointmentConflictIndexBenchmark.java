@@ -0,0 +1,116 @@
+package com.bluemobility.bmpresence.benchmark;
+
+import com.bluemobility.bmpresence.config.AppointmentProperties;
+import com.bluemobility.bmpresence.dto.AppointmentConflict;
+import com.bluemobility.bmpresence.model.PresenceAppointment;
+import com.bluemobility.bmpresence.service.AppointmentConflictIndex;
+import com.bluemobility.bmpresence.service.RecurrenceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conflict lookups against {@link AppointmentConflictIndex} holding one
+ * million appointments, compared with a linear scan over the same data (the
+ * access pattern of the previous {@code JSON_CONTAINS} query).
+ * {@code validateBooking} is the per-day check run when an appointment with
+ * two resources is created or updated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AppointmentConflictIndexBenchmark {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 1);
+    private static final int DAYS = 730;
+
+    @Param("1000000")
+    private int appointments;
+
+    @Param({ "5000" })
+    private int subjects;
+
+    @Param({ "200" })
+    private int resources;
+
+    private AppointmentConflictIndex index;
+    private PresenceAppointment[] all;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AppointmentProperties properties = new AppointmentProperties();
+        index = new AppointmentConflictIndex(null, properties, new RecurrenceService(properties));
+        all = new PresenceAppointment[appointments];
+        SplittableRandom seed = new SplittableRandom(42);
+        for (int i = 0; i < appointments; i++) {
+            LocalDateTime start = FIRST_DAY.plusDays(seed.nextInt(DAYS)).atTime(8 + seed.nextInt(4), 0);
+            PresenceAppointment appointment = new PresenceAppointment();
+            appointment.setId(i + 1);
+            appointment.setSubject("subject-" + seed.nextInt(subjects));
+            appointment.setStartTime(start);
+            appointment.setEndTime(start.plusHours(8));
+            appointment.setResourceIds(List.of(seed.nextInt(resources), seed.nextInt(resources)));
+            appointment.setActive(true);
+            index.index(appointment);
+            all[i] = appointment;
+        }
+        random = new SplittableRandom(7);
+    }
+
+    @Benchmark
+    public Optional<Integer> indexedLookup() {
+        Probe probe = nextProbe();
+        return index.findConflict(probe.subject(), probe.resourceId(), probe.from(), probe.to(), null);
+    }
+
+    @Benchmark
+    public List<AppointmentConflict> validateBooking() {
+        Probe probe = nextProbe();
+        return index.findConflicts(probe.subject(), List.of(probe.resourceId(), probe.resourceId() + 1),
+                probe.from(), probe.to(), null);
+    }
+
+    @Benchmark
+    public Optional<Integer> linearScan() {
+        Probe probe = nextProbe();
+        for (PresenceAppointment appointment : all) {
+            if (appointment.getSubject().equals(probe.subject())
+                    && appointment.getResourceIds().contains(probe.resourceId())
+                    && ((!appointment.getStartTime().isBefore(probe.from())
+                            && appointment.getStartTime().isBefore(probe.to()))
+                            || (appointment.getEndTime().isAfter(probe.from())
+                                    && !appointment.getEndTime().isAfter(probe.to())))) {
+                return Optional.of(appointment.getId());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Probe nextProbe() {
+        LocalDateTime from = FIRST_DAY.plusDays(random.nextInt(DAYS)).atStartOfDay();
+        return new Probe("subject-" + random.nextInt(subjects), random.nextInt(resources), from, from.plusDays(1));
+    }
+
+    private record Probe(String subject, Integer resourceId, LocalDateTime from, LocalDateTime to) {
+    }
+}
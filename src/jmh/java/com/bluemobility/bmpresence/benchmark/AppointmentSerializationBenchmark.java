@@ -0,0 +1,67 @@
+package com.bluemobility.bmpresence.benchmark;
+
+import com.bluemobility.bmpresence.model.PresenceAppointment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of appointment lists, the bulk of the response time
+ * of {@code GET /api/appointments} once the rows are loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppointmentSerializationBenchmark {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 1);
+
+    @Param({ "100", "1000", "10000" })
+    private int appointments;
+
+    private JsonMapper jsonMapper;
+    private List<PresenceAppointment> page;
+
+    @Setup
+    public void setUp() {
+        jsonMapper = JsonMapper.builder().build();
+
+        SplittableRandom random = new SplittableRandom(42);
+        page = new ArrayList<>(appointments);
+        for (int i = 0; i < appointments; i++) {
+            LocalDateTime start = FIRST_DAY.plusDays(random.nextInt(365)).atTime(8 + random.nextInt(4), 0);
+            PresenceAppointment appointment = new PresenceAppointment();
+            appointment.setId(i + 1);
+            appointment.setSubject("subject-" + random.nextInt(5000));
+            appointment.setStartTime(start);
+            appointment.setEndTime(start.plusHours(8));
+            appointment.setResourceIds(List.of(random.nextInt(200), random.nextInt(200)));
+            appointment.setActive(true);
+            page.add(appointment);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return jsonMapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,85 @@
+package com.bluemobility.bmpresence.benchmark;
+
+import com.bluemobility.bmpresence.config.AuthProperties;
+import com.bluemobility.bmpresence.service.PasswordHasher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password hashing and verification as done on registration and login,
+ * including the hand-off to the hashing pool. {@code verifyLegacy} checks a
+ * salted SHA-256 hash from before PBKDF2.
+ *
+ * <p>The cost is dominated by {@code iterations}; use this benchmark to pick
+ * {@code auth.password-hashing.iterations} for the production hardware.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PasswordHasherBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({ "600000" })
+    private int iterations;
+
+    private PasswordHasher passwordHasher;
+    private String salt;
+    private String storedHash;
+    private String legacyHash;
+
+    @Setup
+    public void setUp() throws Exception {
+        AuthProperties authProperties = new AuthProperties();
+        authProperties.getPasswordHashing().setIterations(iterations);
+        passwordHasher = new PasswordHasher(authProperties, new SimpleMeterRegistry());
+
+        salt = passwordHasher.generateSalt();
+        storedHash = passwordHasher.hash(PASSWORD, salt);
+
+        byte[] saltBytes = Base64.getDecoder().decode(salt);
+        byte[] passwordBytes = PASSWORD.getBytes(StandardCharsets.UTF_8);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(saltBytes);
+        legacyHash = Base64.getEncoder().encodeToString(digest.digest(passwordBytes));
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordHasher.shutdown();
+    }
+
+    @Benchmark
+    public String hash() {
+        return passwordHasher.hash(PASSWORD, salt);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return passwordHasher.verify(PASSWORD, storedHash, salt);
+    }
+
+    @Benchmark
+    public boolean verifyLegacy() {
+        return passwordHasher.verify(PASSWORD, legacyHash, salt);
+    }
+}
@@ -0,0 +1,79 @@
+package com.bluemobility.bmpresence.benchmark;
+
+import com.bluemobility.bmpresence.config.JwtConfigProperties;
+import com.bluemobility.bmpresence.service.TokenDenylist;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the revocation check the JWT filter runs on every request, with
+ * {@code entries} revoked tokens in the denylist.
+ *
+ * <p>{@code notRevoked} is the common case and should be answered by the
+ * Bloom filter alone; {@code revoked} also goes through the exact set. Run
+ * with {@code -prof gc} to confirm neither allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenDenylistBenchmark {
+
+    private static final int PROBES = 1024;
+
+    @Param({ "1000", "100000" })
+    private int entries;
+
+    private TokenDenylist denylist;
+    private String[] revokedIds;
+    private String[] activeIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        JwtConfigProperties jwtConfig = new JwtConfigProperties();
+        denylist = new TokenDenylist(jwtConfig);
+
+        long expiresAt = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(30);
+        revokedIds = new String[PROBES];
+        for (int i = 0; i < entries; i++) {
+            String tokenId = UUID.randomUUID().toString();
+            denylist.add(tokenId, expiresAt);
+            if (i < PROBES) {
+                revokedIds[i] = tokenId;
+            }
+        }
+        for (int i = entries; i < PROBES; i++) {
+            revokedIds[i] = revokedIds[i % entries];
+        }
+
+        activeIds = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            activeIds[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    @Benchmark
+    public boolean notRevoked() {
+        return denylist.isRevoked(activeIds[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean revoked() {
+        return denylist.isRevoked(revokedIds[next++ & (PROBES - 1)]);
+    }
+}
@@ -0,0 +1,79 @@
+package com.bluemobility.bmpresence.benchmark;
+
+import com.bluemobility.bmpresence.config.JwtConfigProperties;
+import com.bluemobility.bmpresence.service.TokenDenylist;
+import com.bluemobility.bmpresence.service.TokenService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issuing, verification and renewal in {@link TokenService}, without
+ * the verified token cache in front of it.
+ *
+ * <p>{@code renew} uses a token that expires within the hour, since tokens
+ * with more than a day left are not renewed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenServiceBenchmark {
+
+    private static final String SECRET =
+            "bmpresence-secret-key-change-this-in-production-must-be-at-least-256-bits-long-for-security";
+
+    private TokenService tokenService;
+    private String token;
+    private String expiringToken;
+
+    @Setup
+    public void setUp() {
+        JwtConfigProperties jwtConfig = new JwtConfigProperties();
+        jwtConfig.setSecret(SECRET);
+        tokenService = new TokenService(jwtConfig, new TokenDenylist(jwtConfig));
+        token = tokenService.generateToken(42);
+
+        Instant now = Instant.now();
+        expiringToken = Jwts.builder()
+                .id(UUID.randomUUID().toString())
+                .subject("42")
+                .issuedAt(Date.from(now.minus(30, ChronoUnit.DAYS)))
+                .expiration(Date.from(now.plus(1, ChronoUnit.HOURS)))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+
+    @Benchmark
+    public String generate() {
+        return tokenService.generateToken(42);
+    }
+
+    @Benchmark
+    public TokenService.VerifiedToken verify() {
+        return tokenService.verify(token);
+    }
+
+    @Benchmark
+    public String renew() {
+        return tokenService.renewToken(expiringToken);
+    }
+}
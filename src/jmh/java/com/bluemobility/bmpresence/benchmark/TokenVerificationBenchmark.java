@@ -0,0 +1,85 @@
+package com.bluemobility.bmpresence.benchmark;
+
+import com.bluemobility.bmpresence.config.JwtConfigProperties;
+import com.bluemobility.bmpresence.service.TokenDenylist;
+import com.bluemobility.bmpresence.service.TokenService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-request token verification cost of the JWT filter before
+ * and after the signing key and parser were cached in {@link TokenService}.
+ *
+ * <p>{@code legacyFilterPath} reproduces the previous behaviour: the secret is
+ * decoded and a new parser is built on every call, and the token is parsed
+ * twice (validity check and user ID extraction).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenVerificationBenchmark {
+
+    private JwtConfigProperties jwtConfig;
+    private TokenService tokenService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtConfig = new JwtConfigProperties();
+        jwtConfig.setSecret("bmpresence-secret-key-change-this-in-production-must-be-at-least-256-bits-long-for-security");
+        tokenService = new TokenService(jwtConfig, new TokenDenylist(jwtConfig));
+        token = tokenService.generateToken(42);
+    }
+
+    @Benchmark
+    public void legacyFilterPath(Blackhole blackhole) {
+        Claims validity = Jwts.parser()
+                .verifyWith(legacySigningKey())
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+        blackhole.consume(validity.getExpiration());
+
+        Claims subject = Jwts.parser()
+                .verifyWith(legacySigningKey())
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+        blackhole.consume(Integer.parseInt(subject.getSubject()));
+    }
+
+    @Benchmark
+    public TokenService.VerifiedToken cachedFilterPath() {
+        return tokenService.verify(token);
+    }
+
+    private SecretKey legacySigningKey() {
+        byte[] keyBytes;
+        try {
+            keyBytes = Base64.getDecoder().decode(jwtConfig.getSecret());
+        } catch (IllegalArgumentException e) {
+            keyBytes = jwtConfig.getSecret().getBytes(StandardCharsets.UTF_8);
+        }
+        return Keys.hmacShaKeyFor(keyBytes);
+    }
+}
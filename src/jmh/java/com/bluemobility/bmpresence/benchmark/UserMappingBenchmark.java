@@ -0,0 +1,63 @@
+package com.bluemobility.bmpresence.benchmark;
+
+import com.bluemobility.bmpresence.dto.UserDTO;
+import com.bluemobility.bmpresence.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping a page of users to {@link UserDTO}, as the user list endpoints do
+ * for every response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserMappingBenchmark {
+
+    @Param({ "100", "1000" })
+    private int users;
+
+    private List<User> page;
+
+    @Setup
+    public void setUp() {
+        page = new ArrayList<>(users);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < users; i++) {
+            User user = new User();
+            user.setId(i + 1);
+            user.setUsername("user" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setName("Name" + i);
+            user.setLastName("LastName" + i);
+            user.setIsAdmin(i % 50 == 0);
+            user.setActive(true);
+            user.setMustChangePassword(false);
+            user.setCreatedAt(now.minusDays(i));
+            user.setLastActiveAt(now.minusMinutes(i));
+            page.add(user);
+        }
+    }
+
+    @Benchmark
+    public List<UserDTO> fromUser() {
+        return page.stream().map(UserDTO::fromUser).toList();
+    }
+}
@@ -0,0 +1,118 @@
+package com.bluemobility.bmpresence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the platform-thread request pool (Tomcat's default of 200
+ * threads) with one virtual thread per request, for {@code clients}
+ * concurrent requests that each block on the database.
+ *
+ * <p>A request waits {@code latencyMillis} for a connection-bound query; the
+ * connection pool is modelled by a semaphore of {@code connections} permits.
+ * With the default pool of 10 both models are bound by the pool, at about
+ * {@code connections / latencyMillis} requests per millisecond; virtual
+ * threads only pull ahead once the pool is sized for the concurrency.
+ * One benchmark operation is a full round of {@code clients} requests, so the
+ * request throughput is the score times {@code clients}. After the trial the
+ * peak live thread count and the peak heap use observed after each round are
+ * printed; platform threads additionally reserve native stack memory that the
+ * heap figure does not include. Run with {@code -prof gc} for allocation
+ * rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class VirtualThreadBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({ "1000", "10000" })
+    private int clients;
+
+    @Param({ "platform", "virtual" })
+    private String threads;
+
+    // The application's Hikari pool (10 connections by default), and a pool large enough not to be the bottleneck
+    @Param({ "10", "1000" })
+    private int connections;
+
+    @Param({ "5" })
+    private int latencyMillis;
+
+    private ExecutorService executor;
+    private Semaphore connectionPool;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private long peakHeapBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        connectionPool = new Semaphore(connections, true);
+        threadBean.resetPeakThreadCount();
+        peakHeapBytes = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        System.out.printf("%n%s threads, %d clients: peak live threads %d, peak heap used %d MB%n",
+                threads, clients, threadBean.getPeakThreadCount(), peakHeapBytes / (1024 * 1024));
+    }
+
+    @Benchmark
+    public void concurrentRequests() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            executor.execute(() -> {
+                try {
+                    handleRequest();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        peakHeapBytes = Math.max(peakHeapBytes, memoryBean.getHeapMemoryUsage().getUsed());
+    }
+
+    private void handleRequest() {
+        try {
+            connectionPool.acquire();
+            try {
+                // Blocking JDBC round trip
+                Thread.sleep(latencyMillis);
+            } finally {
+                connectionPool.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.bluemobility.bmpresence.loadtest;
+
+import com.bluemobility.bmpresence.config.AuthProperties;
+import com.bluemobility.bmpresence.service.PasswordHasher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
+
+/**
+ * Fills the {@code Users}, {@code PresenceResources} and
+ * {@code PresenceAppointments} tables with a synthetic, production-sized
+ * dataset, written with JDBC batches.
+ *
+ * <p>The target is MySQL ({@code --db-url}, {@code --db-username},
+ * {@code --db-password}, with the application schema already in place) or,
+ * by default, an embedded H2 file database in MySQL mode whose schema is
+ * created here. The tables must be empty. Rows get explicit IDs: users are
+ * {@code user1..userN}, all with the password given by {@code --password},
+ * and {@code user1} is an administrator.
+ *
+ * <p>Appointments fall on weekdays between {@code --days-back} days ago and
+ * {@code --days-ahead} days from now, mostly full or half days. Each books
+ * one to five resources, skewed towards a small set of popular ones, and a
+ * {@code --recurring-ratio} share are recurring series.
+ *
+ * <pre>
+ * ./mvnw -Ploadtest test-compile exec:java@generate-data \
+ *     -Dexec.args="--users 50000 --resources 2000 --appointments 10000000"
+ * </pre>
+ */
+public final class DatasetGenerator {
+
+    private static final String DEFAULT_URL =
+            "jdbc:h2:file:./target/loadtest/bmpresence;MODE=MySQL;AUTO_SERVER=TRUE";
+
+    private static final String[] FIRST_NAMES = { "Marco", "Giulia", "Luca", "Francesca", "Alessandro", "Chiara",
+            "Andrea", "Sara", "Matteo", "Martina", "Lorenzo", "Elena", "Davide", "Valentina", "Simone", "Alessia",
+            "Federico", "Giorgia", "Riccardo", "Laura", "Stefano", "Anna", "Paolo", "Silvia", "Giovanni", "Marta",
+            "Roberto", "Beatrice", "Fabio", "Elisa", "Daniele", "Ilaria", "Michele", "Federica", "Emanuele", "Noemi" };
+    private static final String[] LAST_NAMES = { "Rossi", "Russo", "Ferrari", "Esposito", "Bianchi", "Romano",
+            "Colombo", "Ricci", "Marino", "Greco", "Bruno", "Gallo", "Conti", "De Luca", "Mancini", "Costa",
+            "Giordano", "Rizzo", "Lombardi", "Moretti", "Barbieri", "Fontana", "Santoro", "Mariani", "Rinaldi",
+            "Caruso", "Ferrara", "Galli", "Martini", "Leone", "Longo", "Gentile", "Martinelli", "Vitale", "Lombardo" };
+    private static final String[] RESOURCE_KINDS = { "Postazione", "Postazione", "Postazione", "Sala riunioni",
+            "Parcheggio", "Ufficio" };
+    private static final String[] COLORS = { "#1E88E5", "#43A047", "#E53935", "#FB8C00", "#8E24AA", "#00ACC1",
+            "#6D4C41", "#546E7A" };
+    private static final String[] RECURRENCE_RULES = {
+            "FREQ=WEEKLY;BYDAY=MO,WE,FR;COUNT=24",
+            "FREQ=WEEKLY;BYDAY=TU,TH;COUNT=16",
+            "FREQ=WEEKLY;INTERVAL=2;BYDAY=MO;COUNT=10",
+            "FREQ=DAILY;BYDAY=MO,TU,WE,TH,FR;COUNT=20",
+            "FREQ=MONTHLY;BYDAY=1MO;COUNT=6" };
+
+    private final Options options;
+    private final SplittableRandom random;
+    private final int batchSize;
+    private final boolean h2;
+    private final LocalDateTime now = LocalDateTime.now().withNano(0);
+
+    private DatasetGenerator(Options options) {
+        this.options = options;
+        this.random = new SplittableRandom(options.longValue("seed", 42));
+        this.batchSize = options.integer("batch-size", 5000);
+        this.h2 = options.string("db-url", DEFAULT_URL).startsWith("jdbc:h2:");
+    }
+
+    public static void main(String[] args) throws Exception {
+        new DatasetGenerator(new Options(args)).run();
+    }
+
+    private void run() throws Exception {
+        int users = options.integer("users", 50_000);
+        int resources = options.integer("resources", 2_000);
+        long appointments = options.longValue("appointments", 10_000_000);
+
+        String url = options.string("db-url", DEFAULT_URL);
+        try (Connection connection = DriverManager.getConnection(url,
+                options.string("db-username", h2 ? "sa" : System.getenv("DB_USERNAME")),
+                options.string("db-password", h2 ? "" : System.getenv("DB_PASSWORD")))) {
+            connection.setAutoCommit(false);
+            if (h2) {
+                createH2Schema(connection);
+            }
+            requireEmpty(connection, "Users", "PresenceResources", "PresenceAppointments");
+
+            long startedAt = System.nanoTime();
+            String[] subjects = insertUsers(connection, users);
+            insertResources(connection, resources);
+            insertAppointments(connection, appointments, subjects, resources);
+            if (h2) {
+                restartIdentity(connection, "Users", users);
+                restartIdentity(connection, "PresenceResources", resources);
+                restartIdentity(connection, "PresenceAppointments", appointments);
+                connection.commit();
+            }
+            System.out.printf("Done in %ds: %d users, %d resources, %d appointments in %s%n",
+                    (System.nanoTime() - startedAt) / 1_000_000_000, users, resources, appointments, url);
+        }
+    }
+
+    /**
+     * Inserts the users and returns their full names, used as appointment
+     * subjects. Every user shares one salt and hash, so only one password
+     * hash is computed.
+     */
+    private String[] insertUsers(Connection connection, int users) throws SQLException {
+        AuthProperties authProperties = new AuthProperties();
+        authProperties.getPasswordHashing().setIterations(
+                options.integer("hash-iterations", authProperties.getPasswordHashing().getIterations()));
+        PasswordHasher passwordHasher = new PasswordHasher(authProperties, new SimpleMeterRegistry());
+        String salt = passwordHasher.generateSalt();
+        String hashedPassword = passwordHasher.hash(options.string("password", "loadtest"), salt);
+        passwordHasher.shutdown();
+
+        String[] subjects = new String[users];
+        Timestamp createdAt = Timestamp.valueOf(now.minusYears(2));
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO Users "
+                + "(Id, Name, LastName, Email, HashedPassword, Salt, Username, IsOnline, IsAdmin, Active, "
+                + "MustChangePassword, CreatedAt, LastUpdated) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            Batch batch = new Batch("users", connection, insert, users);
+            for (int id = 1; id <= users; id++) {
+                String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+                String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                subjects[id - 1] = name + " " + lastName;
+
+                insert.setInt(1, id);
+                insert.setString(2, name);
+                insert.setString(3, lastName);
+                insert.setString(4, "user" + id + "@example.com");
+                insert.setString(5, hashedPassword);
+                insert.setString(6, salt);
+                insert.setString(7, "user" + id);
+                insert.setBoolean(8, false);
+                insert.setBoolean(9, id == 1);
+                // A few former employees
+                insert.setBoolean(10, id == 1 || random.nextInt(50) != 0);
+                insert.setBoolean(11, false);
+                insert.setTimestamp(12, createdAt);
+                insert.setTimestamp(13, createdAt);
+                batch.add();
+            }
+            batch.finish();
+        }
+        return subjects;
+    }
+
+    private void insertResources(Connection connection, int resources) throws SQLException {
+        Timestamp createdAt = Timestamp.valueOf(now.minusYears(2));
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO PresenceResources "
+                + "(Id, Name, Background, Foreground, Active, CreatedAt, UpdatedAt) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            Batch batch = new Batch("resources", connection, insert, resources);
+            for (int id = 1; id <= resources; id++) {
+                insert.setInt(1, id);
+                insert.setString(2, RESOURCE_KINDS[random.nextInt(RESOURCE_KINDS.length)] + " " + id);
+                insert.setString(3, COLORS[random.nextInt(COLORS.length)]);
+                insert.setString(4, "#FFFFFF");
+                insert.setBoolean(5, random.nextInt(20) != 0);
+                insert.setTimestamp(6, createdAt);
+                insert.setTimestamp(7, createdAt);
+                batch.add();
+            }
+            batch.finish();
+        }
+    }
+
+    private void insertAppointments(Connection connection, long appointments, String[] subjects, int resources)
+            throws SQLException {
+        int daysBack = options.integer("days-back", 540);
+        int daysAhead = options.integer("days-ahead", 180);
+        double recurringRatio = options.decimal("recurring-ratio", 0.02);
+        LocalDate firstDay = now.toLocalDate().minusDays(daysBack);
+
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO PresenceAppointments "
+                + "(Id, Subject, StartTime, EndTime, RecurrenceRule, Active, CreatedAt, UpdatedAt, ResourceIds) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, " + (h2 ? "? FORMAT JSON" : "?") + ")");
+                PreparedStatement insertResource = connection.prepareStatement(
+                        "INSERT INTO PresenceAppointmentResources (AppointmentId, ResourceId) VALUES (?, ?)")) {
+            Batch batch = new Batch("appointments", connection, insert, appointments, insertResource);
+            int[] booked = new int[5];
+            for (long id = 1; id <= appointments; id++) {
+                LocalDate day = weekday(firstDay.plusDays(random.nextInt(daysBack + daysAhead)));
+                LocalDateTime start = day.atTime(8 + random.nextInt(3), random.nextBoolean() ? 0 : 30);
+                int hours = switch (random.nextInt(10)) {
+                    case 0 -> 1 + random.nextInt(2);
+                    case 1, 2, 3 -> 4;
+                    default -> 9;
+                };
+                LocalDateTime createdAt = start.minusDays(1 + random.nextInt(30));
+                if (createdAt.isAfter(now)) {
+                    createdAt = now;
+                }
+
+                int resourceCount = resourceFanOut(booked, resources);
+                StringJoiner resourceIds = new StringJoiner(",", "[", "]");
+                for (int i = 0; i < resourceCount; i++) {
+                    resourceIds.add(Integer.toString(booked[i]));
+                    insertResource.setLong(1, id);
+                    insertResource.setInt(2, booked[i]);
+                    insertResource.addBatch();
+                }
+
+                insert.setLong(1, id);
+                insert.setString(2, subjects[random.nextInt(subjects.length)]);
+                insert.setTimestamp(3, Timestamp.valueOf(start));
+                insert.setTimestamp(4, Timestamp.valueOf(start.plusHours(hours)));
+                insert.setString(5, random.nextDouble() < recurringRatio
+                        ? RECURRENCE_RULES[random.nextInt(RECURRENCE_RULES.length)]
+                        : null);
+                insert.setBoolean(6, random.nextInt(100) != 0);
+                insert.setTimestamp(7, Timestamp.valueOf(createdAt));
+                insert.setTimestamp(8, Timestamp.valueOf(createdAt));
+                insert.setString(9, resourceIds.toString());
+                batch.add();
+            }
+            batch.finish();
+        }
+    }
+
+    /**
+     * Picks one to five distinct resources into {@code booked} and returns how
+     * many. Most bookings take one resource (a desk), some add a room or a
+     * parking space. Resource popularity is skewed: the square of a uniform
+     * value puts about a third of the bookings on the first tenth of the
+     * resources.
+     */
+    private int resourceFanOut(int[] booked, int resources) {
+        int roll = random.nextInt(100);
+        int count = Math.min(resources, roll < 70 ? 1 : roll < 90 ? 2 : 3 + random.nextInt(3));
+        for (int i = 0; i < count; i++) {
+            int candidate;
+            do {
+                double skew = random.nextDouble();
+                candidate = 1 + (int) (resources * skew * skew);
+            } while (contains(booked, i, candidate));
+            booked[i] = candidate;
+        }
+        Arrays.sort(booked, 0, count);
+        return count;
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static LocalDate weekday(LocalDate day) {
+        DayOfWeek dayOfWeek = day.getDayOfWeek();
+        if (dayOfWeek == DayOfWeek.SATURDAY) {
+            return day.plusDays(2);
+        }
+        return dayOfWeek == DayOfWeek.SUNDAY ? day.plusDays(1) : day;
+    }
+
+    private void createH2Schema(Connection connection) throws SQLException, IOException {
+        String script;
+        try (InputStream in = DatasetGenerator.class.getResourceAsStream("/h2-schema.sql")) {
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : script.replaceAll("(?m)^--.*$", "").split(";")) {
+                if (!sql.isBlank()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+        connection.commit();
+    }
+
+    private static void requireEmpty(Connection connection, String... tables) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String table : tables) {
+                try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                    rs.next();
+                    if (rs.getLong(1) > 0) {
+                        throw new IllegalStateException(table + " is not empty; generate into an empty database");
+                    }
+                }
+            }
+        }
+    }
+
+    private static void restartIdentity(Connection connection, String table, long lastId) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE " + table + " ALTER COLUMN Id RESTART WITH " + (lastId + 1));
+        }
+    }
+
+    /**
+     * Executes and commits the statements every {@code --batch-size} rows and
+     * reports progress every ten batches.
+     */
+    private final class Batch {
+
+        private final String table;
+        private final Connection connection;
+        private final PreparedStatement[] statements;
+        private final long total;
+        private final long startedAt = System.nanoTime();
+        private long rows;
+
+        Batch(String table, Connection connection, PreparedStatement statement, long total,
+                PreparedStatement... dependents) {
+            this.table = table;
+            this.connection = connection;
+            this.statements = new PreparedStatement[dependents.length + 1];
+            this.statements[0] = statement;
+            System.arraycopy(dependents, 0, statements, 1, dependents.length);
+            this.total = total;
+        }
+
+        void add() throws SQLException {
+            statements[0].addBatch();
+            rows++;
+            if (rows % batchSize == 0) {
+                flush();
+                if (rows % (batchSize * 10L) == 0) {
+                    report();
+                }
+            }
+        }
+
+        void finish() throws SQLException {
+            flush();
+            report();
+        }
+
+        private void flush() throws SQLException {
+            for (PreparedStatement statement : statements) {
+                statement.executeBatch();
+            }
+            connection.commit();
+        }
+
+        private void report() {
+            double seconds = Math.max(1e-3, (System.nanoTime() - startedAt) / 1e9);
+            System.out.printf("%-12s %,d / %,d rows (%,.0f rows/s)%n", table, rows, total, rows / seconds);
+        }
+    }
+}
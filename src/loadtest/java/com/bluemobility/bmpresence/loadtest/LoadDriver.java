@@ -0,0 +1,312 @@
+package com.bluemobility.bmpresence.loadtest;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a morning-rush traffic mix against a running instance and reports
+ * throughput and latency percentiles per operation.
+ *
+ * <p>Each of {@code --clients} virtual users arrives during
+ * {@code --ramp-up}, logs in as a random {@code userN} of the generated
+ * dataset and then, until {@code --duration} has passed, repeatedly picks an
+ * operation by the weights of {@code --mix} and waits up to
+ * {@code --think-time}:
+ * <ul>
+ * <li>{@code login}: logs in again (PBKDF2-bound)</li>
+ * <li>{@code heartbeat}: {@code PUT /api/users/{id}/online-status}</li>
+ * <li>{@code range}: one page of a day of the calendar,
+ * {@code GET /api/appointments/range/page}</li>
+ * <li>{@code booking}: {@code POST /api/appointments} for a day in the next
+ * two weeks; {@code 409 Conflict} counts as an expected outcome</li>
+ * </ul>
+ *
+ * <p>All clients log in from the same address, so the server must run with
+ * {@code auth.rate-limit.enabled=false}.
+ *
+ * <pre>
+ * ./mvnw -Ploadtest test-compile exec:java@load-test \
+ *     -Dexec.args="--base-url http://localhost:8080 --clients 500 --duration 5m"
+ * </pre>
+ */
+public final class LoadDriver {
+
+    enum Operation {
+        LOGIN, HEARTBEAT, RANGE, BOOKING
+    }
+
+    private final Options options;
+    private final URI baseUrl;
+    private final int users;
+    private final int resources;
+    private final String password;
+    private final Duration thinkTime;
+    private final int[] cumulativeWeights;
+    private final HttpClient httpClient;
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private LoadDriver(Options options) {
+        this.options = options;
+        this.baseUrl = URI.create(options.string("base-url", "http://localhost:8080"));
+        this.users = options.integer("users", 50_000);
+        this.resources = options.integer("resources", 2_000);
+        this.password = options.string("password", "loadtest");
+        this.thinkTime = options.duration("think-time", Duration.ofMillis(500));
+        this.cumulativeWeights = parseMix(options.string("mix", "login=5,heartbeat=50,range=35,booking=10"));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadDriver(new Options(args)).run();
+    }
+
+    private void run() throws Exception {
+        int clients = options.integer("clients", 200);
+        Duration rampUp = options.duration("ramp-up", Duration.ofSeconds(30));
+        Duration duration = options.duration("duration", Duration.ofMinutes(2));
+        long seed = options.longValue("seed", 42);
+
+        System.out.printf("%d clients against %s, ramp-up %ds, duration %ds%n", clients, baseUrl,
+                rampUp.toSeconds(), duration.toSeconds());
+
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + duration.toNanos();
+        List<Future<Recorder>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            SplittableRandom seeds = new SplittableRandom(seed);
+            for (int i = 0; i < clients; i++) {
+                long arrival = startedAt + rampUp.toNanos() * i / Math.max(1, clients);
+                SplittableRandom random = seeds.split();
+                results.add(executor.submit(() -> new Client(random).run(arrival, deadline)));
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+
+        Recorder total = new Recorder();
+        for (Future<Recorder> result : results) {
+            total.merge(result.get());
+        }
+        total.print(elapsedSeconds);
+    }
+
+    private int[] parseMix(String mix) {
+        int[] weights = new int[Operation.values().length];
+        for (String part : mix.split(",")) {
+            String[] entry = part.split("=");
+            weights[Operation.valueOf(entry[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(entry[1].trim());
+        }
+        for (int i = 1; i < weights.length; i++) {
+            weights[i] += weights[i - 1];
+        }
+        return weights;
+    }
+
+    /**
+     * One virtual user with its own session and latency recorder.
+     */
+    private final class Client {
+
+        private final SplittableRandom random;
+        private final Recorder recorder = new Recorder();
+        private String token;
+        private int userId;
+        private String subject;
+
+        Client(SplittableRandom random) {
+            this.random = random;
+        }
+
+        Recorder run(long arrival, long deadline) throws InterruptedException {
+            TimeUnit.NANOSECONDS.sleep(arrival - System.nanoTime());
+            String username = "user" + (1 + random.nextInt(users));
+            while (token == null && System.nanoTime() < deadline) {
+                login(username);
+                if (token == null) {
+                    TimeUnit.SECONDS.sleep(1);
+                }
+            }
+            while (System.nanoTime() < deadline) {
+                switch (nextOperation()) {
+                    case LOGIN -> login(username);
+                    case HEARTBEAT -> heartbeat();
+                    case RANGE -> range();
+                    case BOOKING -> booking();
+                }
+                long pause = thinkTime.toNanos();
+                if (pause > 0) {
+                    TimeUnit.NANOSECONDS.sleep(random.nextLong(pause));
+                }
+            }
+            return recorder;
+        }
+
+        private Operation nextOperation() {
+            int roll = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (Operation operation : Operation.values()) {
+                if (roll < cumulativeWeights[operation.ordinal()]) {
+                    return operation;
+                }
+            }
+            return Operation.HEARTBEAT;
+        }
+
+        private void login(String username) {
+            String body = "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}";
+            HttpResponse<String> response = send(Operation.LOGIN, request("/api/auth/login")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body)));
+            if (response != null && response.statusCode() == 200) {
+                JsonNode json = jsonMapper.readTree(response.body());
+                token = json.path("token").asString();
+                JsonNode user = json.path("user");
+                userId = user.path("id").asInt();
+                subject = user.path("name").asString() + " " + user.path("lastName").asString();
+            }
+        }
+
+        private void heartbeat() {
+            send(Operation.HEARTBEAT, authorized("/api/users/" + userId + "/online-status?isOnline=true")
+                    .PUT(HttpRequest.BodyPublishers.noBody()));
+        }
+
+        private void range() {
+            LocalDate day = LocalDate.now().plusDays(random.nextInt(-7, 14));
+            send(Operation.RANGE, authorized("/api/appointments/range/page?start=" + day.atStartOfDay()
+                    + "&end=" + day.plusDays(1).atStartOfDay() + "&size=100").GET());
+        }
+
+        private void booking() {
+            LocalDateTime start = LocalDate.now().plusDays(1 + random.nextInt(14)).atTime(9, 0);
+            String body = "{\"subject\":\"" + subject + "\",\"startTime\":\"" + start
+                    + "\",\"endTime\":\"" + start.plusHours(9) + "\",\"resourceIds\":["
+                    + (1 + random.nextInt(resources)) + "]}";
+            send(Operation.BOOKING, authorized("/api/appointments")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body)));
+        }
+
+        private HttpRequest.Builder request(String path) {
+            return HttpRequest.newBuilder(baseUrl.resolve(path)).timeout(Duration.ofSeconds(30));
+        }
+
+        private HttpRequest.Builder authorized(String path) {
+            return request(path).header("Authorization", "Bearer " + token);
+        }
+
+        private HttpResponse<String> send(Operation operation, HttpRequest.Builder request) {
+            long startedAt = System.nanoTime();
+            try {
+                HttpResponse<String> response = httpClient.send(request.build(),
+                        HttpResponse.BodyHandlers.ofString());
+                recorder.record(operation, System.nanoTime() - startedAt, response.statusCode());
+                return response;
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                recorder.record(operation, System.nanoTime() - startedAt, 0);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Latencies and outcomes per operation. Each client has its own, merged
+     * once the run ends.
+     */
+    private static final class Recorder {
+
+        private final Map<Operation, Samples> samples = new EnumMap<>(Operation.class);
+
+        void record(Operation operation, long nanos, int status) {
+            Samples operationSamples = samples.computeIfAbsent(operation, o -> new Samples());
+            operationSamples.add(nanos);
+            if (status >= 200 && status < 300) {
+                operationSamples.ok++;
+            } else if (status == 409 || status == 429) {
+                operationSamples.rejected++;
+            } else {
+                operationSamples.errors++;
+            }
+        }
+
+        void merge(Recorder other) {
+            other.samples.forEach((operation, otherSamples) ->
+                    samples.computeIfAbsent(operation, o -> new Samples()).merge(otherSamples));
+        }
+
+        void print(double elapsedSeconds) {
+            System.out.printf("%n%-10s %9s %9s %9s %9s %9s %9s %9s %9s %9s%n", "operation", "requests", "ok",
+                    "409/429", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+            Samples all = new Samples();
+            samples.forEach((operation, operationSamples) -> {
+                print(operation.name().toLowerCase(), operationSamples, elapsedSeconds);
+                all.merge(operationSamples);
+            });
+            print("total", all, elapsedSeconds);
+        }
+
+        private static void print(String name, Samples samples, double elapsedSeconds) {
+            long[] sorted = Arrays.copyOf(samples.latencies, samples.size);
+            Arrays.sort(sorted);
+            System.out.printf("%-10s %9d %9d %9d %9d %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, samples.size,
+                    samples.ok, samples.rejected, samples.errors, samples.size / elapsedSeconds,
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    percentile(sorted, 1.0));
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = Math.max(0, (int) Math.ceil(sorted.length * quantile) - 1);
+            return sorted[index] / 1e6;
+        }
+    }
+
+    private static final class Samples {
+
+        private long[] latencies = new long[1024];
+        private int size;
+        private long ok;
+        private long rejected;
+        private long errors;
+
+        void add(long nanos) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = nanos;
+        }
+
+        void merge(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.latencies[i]);
+            }
+            ok += other.ok;
+            rejected += other.rejected;
+            errors += other.errors;
+        }
+    }
+}
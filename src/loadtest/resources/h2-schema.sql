@@ -0,0 +1,80 @@
+-- Schema for the embedded H2 stand-in (MySQL mode), matching the tables the
+-- entities map to. MySQL databases use the application's own schema and
+-- the scripts in db/changes instead.
+
+CREATE TABLE IF NOT EXISTS Users (
+    Id INTEGER GENERATED BY DEFAULT AS IDENTITY,
+    Name VARCHAR(255) NOT NULL,
+    LastName VARCHAR(255) NOT NULL,
+    Email VARCHAR(255) NOT NULL UNIQUE,
+    HashedPassword VARCHAR(255),
+    Salt VARCHAR(255),
+    Username VARCHAR(255),
+    AvatarUrl VARCHAR(255),
+    Status VARCHAR(255),
+    StatusEmoji VARCHAR(255),
+    StatusText VARCHAR(255),
+    IsOnline BOOLEAN,
+    IsAdmin BOOLEAN,
+    Active BOOLEAN NOT NULL,
+    MustChangePassword BOOLEAN,
+    CreatedAt TIMESTAMP(6) NOT NULL,
+    LastUpdated TIMESTAMP(6),
+    LastActiveAt TIMESTAMP(6),
+    PRIMARY KEY (Id)
+);
+
+CREATE TABLE IF NOT EXISTS PresenceResources (
+    Id INTEGER GENERATED BY DEFAULT AS IDENTITY,
+    Name VARCHAR(255) NOT NULL,
+    Background VARCHAR(255),
+    Foreground VARCHAR(255),
+    Active BOOLEAN NOT NULL,
+    CreatedAt TIMESTAMP(6) NOT NULL,
+    UpdatedAt TIMESTAMP(6),
+    PRIMARY KEY (Id)
+);
+
+CREATE TABLE IF NOT EXISTS PresenceAppointments (
+    Id INTEGER GENERATED BY DEFAULT AS IDENTITY,
+    Subject VARCHAR(255),
+    StartTime TIMESTAMP(6) NOT NULL,
+    EndTime TIMESTAMP(6) NOT NULL,
+    RecurrenceRule TEXT,
+    RecurrenceEnd TIMESTAMP(6),
+    Active BOOLEAN NOT NULL,
+    CreatedAt TIMESTAMP(6) NOT NULL,
+    UpdatedAt TIMESTAMP(6),
+    ResourceIds JSON,
+    PRIMARY KEY (Id)
+);
+
+CREATE TABLE IF NOT EXISTS PresenceAppointmentResources (
+    AppointmentId INTEGER NOT NULL,
+    ResourceId INTEGER NOT NULL,
+    PRIMARY KEY (AppointmentId, ResourceId)
+);
+
+CREATE TABLE IF NOT EXISTS RevokedTokens (
+    TokenId VARCHAR(64) NOT NULL,
+    UserId INTEGER NOT NULL,
+    ExpiresAt TIMESTAMP(6) NOT NULL,
+    RevokedAt TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (TokenId)
+);
+
+CREATE TABLE IF NOT EXISTS CollectionVersions (
+    Kind VARCHAR(32) NOT NULL,
+    Version BIGINT NOT NULL,
+    PRIMARY KEY (Kind)
+);
+
+CREATE INDEX IF NOT EXISTS IX_PresenceAppointmentResources_ResourceId
+    ON PresenceAppointmentResources (ResourceId, AppointmentId);
+CREATE INDEX IF NOT EXISTS IX_PresenceAppointments_Active_StartTime
+    ON PresenceAppointments (Active, StartTime, Id, EndTime);
+CREATE INDEX IF NOT EXISTS IX_PresenceAppointments_Subject_EndTime
+    ON PresenceAppointments (Subject, EndTime);
+CREATE INDEX IF NOT EXISTS IX_Users_LastUpdated ON Users (LastUpdated);
+CREATE INDEX IF NOT EXISTS IX_RevokedTokens_ExpiresAt ON RevokedTokens (ExpiresAt);
+CREATE INDEX IF NOT EXISTS IX_RevokedTokens_RevokedAt ON RevokedTokens (RevokedAt);
@@ -0,0 +1,101 @@
+package com.bluemobility.bmpresence.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "appointments")
+@Data
+public class AppointmentProperties {
+
+    /**
+     * Duración máxima de una cita (o de cada ocurrencia de una serie). Acota
+     * las consultas por rango de fechas, por lo que no se aceptan citas más
+     * largas
+     */
+    private Duration maxDuration = Duration.ofDays(31);
+
+    /**
+     * Índice en memoria usado para detectar conflictos entre citas
+     */
+    private ConflictIndex conflictIndex = new ConflictIndex();
+
+    /**
+     * Expansión de citas recurrentes (RRULE)
+     */
+    private Recurrence recurrence = new Recurrence();
+
+    /**
+     * Paginación de las consultas por rango de fechas
+     */
+    private Page page = new Page();
+
+    /**
+     * Importación masiva de citas
+     */
+    private BulkImport bulkImport = new BulkImport();
+
+    @Data
+    public static class ConflictIndex {
+        /**
+         * Si está activo, los conflictos se resuelven en memoria sin consultar
+         * la base de datos. Solo refleja las escrituras de esta instancia, por
+         * lo que solo debe activarse con una única instancia.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Número de citas leídas por consulta al construir el índice
+         */
+        private int loadBatchSize = 5_000;
+    }
+
+    @Data
+    public static class Recurrence {
+        /**
+         * Número máximo de ocurrencias guardadas en la caché de expansiones
+         * (cita, ventana), sumando todas las expansiones
+         */
+        private long cacheMaxOccurrences = 200_000;
+
+        /**
+         * Número máximo de ocurrencias devueltas por una expansión
+         */
+        private int maxOccurrences = 10_000;
+
+        /**
+         * Horizonte desde el inicio de una serie nueva dentro del cual se
+         * comprueban conflictos de sus ocurrencias
+         */
+        private Duration conflictHorizon = Duration.ofDays(366);
+    }
+
+    @Data
+    public static class Page {
+        /**
+         * Número de citas por página si el cliente no indica otro
+         */
+        private int defaultSize = 100;
+
+        /**
+         * Número máximo de citas por página
+         */
+        private int maxSize = 1_000;
+    }
+
+    @Data
+    public static class BulkImport {
+        /**
+         * Número de filas validadas e insertadas por transacción
+         */
+        private int batchSize = 1_000;
+
+        /**
+         * Número máximo de filas aceptadas por petición
+         */
+        private int maxRows = 100_000;
+    }
+}
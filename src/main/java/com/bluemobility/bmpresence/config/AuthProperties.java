@@ -0,0 +1,146 @@
+package com.bluemobility.bmpresence.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "auth")
+@Data
+public class AuthProperties {
+
+    /**
+     * Caché de usuarios autenticados usada por el filtro JWT
+     */
+    private PrincipalCache principalCache = new PrincipalCache();
+
+    /**
+     * Cálculo de hashes de contraseñas (PBKDF2) en un pool dedicado
+     */
+    private PasswordHashing passwordHashing = new PasswordHashing();
+
+    /**
+     * Límite de peticiones por cliente en los endpoints públicos de /api/auth
+     */
+    private RateLimit rateLimit = new RateLimit();
+
+    @Data
+    public static class PrincipalCache {
+        /**
+         * Número máximo de usuarios en caché
+         */
+        private long maxSize = 10_000;
+
+        /**
+         * Tiempo máximo que un usuario permanece en caché. Red de seguridad
+         * para cambios hechos por otras instancias; los cambios locales
+         * invalidan la entrada inmediatamente.
+         */
+        private Duration ttl = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class PasswordHashing {
+        /**
+         * Iteraciones de PBKDF2-HMAC-SHA256 para los hashes nuevos. Los
+         * hashes guardados con menos iteraciones se actualizan en el
+         * siguiente inicio de sesión correcto.
+         */
+        private int iterations = 600_000;
+
+        /**
+         * Hilos dedicados al cálculo de hashes
+         */
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Peticiones que pueden esperar un hilo libre; las demás se rechazan
+         * con 429
+         */
+        private int queueCapacity = 64;
+
+        /**
+         * Valor de la cabecera Retry-After de las peticiones rechazadas
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class RateLimit {
+        /**
+         * Si está desactivado, los endpoints no limitan las peticiones
+         */
+        private boolean enabled = true;
+
+        /**
+         * Número máximo de claves (IP o usuario) con estado en memoria
+         */
+        private long maxKeys = 100_000;
+
+        /**
+         * Tiempo sin peticiones tras el cual se descarta el estado de una clave
+         */
+        private Duration idleTimeout = Duration.ofMinutes(10);
+
+        /**
+         * Límites de POST /api/auth/login
+         */
+        private Endpoint login = new Endpoint(new Limit(100, Duration.ofMinutes(1)), new Limit(5, Duration.ofMinutes(1)));
+
+        /**
+         * Límites de POST /api/auth/register
+         */
+        private Endpoint register = new Endpoint(new Limit(20, Duration.ofMinutes(1)), new Limit(3, Duration.ofMinutes(1)));
+
+        /**
+         * Límites de POST /api/auth/renew-token
+         */
+        private Endpoint renewToken = new Endpoint(new Limit(120, Duration.ofMinutes(1)), new Limit(0, Duration.ofMinutes(1)));
+    }
+
+    @Data
+    public static class Endpoint {
+        /**
+         * Límite por dirección IP del cliente
+         */
+        private Limit perIp;
+
+        /**
+         * Límite por nombre de usuario indicado en la petición
+         */
+        private Limit perUsername;
+
+        public Endpoint() {
+            this(new Limit(), new Limit());
+        }
+
+        public Endpoint(Limit perIp, Limit perUsername) {
+            this.perIp = perIp;
+            this.perUsername = perUsername;
+        }
+    }
+
+    @Data
+    public static class Limit {
+        /**
+         * Peticiones permitidas por periodo, también la ráfaga máxima. 0
+         * desactiva el límite.
+         */
+        private int capacity;
+
+        /**
+         * Periodo en el que se recuperan todas las peticiones permitidas
+         */
+        private Duration period = Duration.ofMinutes(1);
+
+        public Limit() {
+        }
+
+        public Limit(int capacity, Duration period) {
+            this.capacity = capacity;
+            this.period = period;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.bluemobility.bmpresence.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.MissingCacheStrategy;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level and query cache for users, backed by bounded,
+ * expiring Caffeine caches through JCache. Resources are not cached here:
+ * {@link com.bluemobility.bmpresence.service.PresenceResourceCatalog} holds
+ * all of them in memory.
+ *
+ * <p>Every region is created here from {@code entity-cache.*}, and Hibernate
+ * fails at startup if an entity or query asks for any other region, so no
+ * region is ever unbounded by accident. The update timestamps region is the
+ * exception: Hibernate checks it to invalidate cached query results, so its
+ * entries (one per table) must never be evicted.
+ */
+@Configuration
+@Slf4j
+public class EntityCacheConfig {
+
+    public static final String USERS_REGION = "users";
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(EntityCacheProperties entityCacheProperties) {
+        return hibernateProperties -> {
+            if (!entityCacheProperties.isEnabled()) {
+                hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+                hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, false);
+                log.info("Hibernate second-level cache disabled");
+                return;
+            }
+
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, createCacheManager(entityCacheProperties));
+            hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, MissingCacheStrategy.FAIL.getExternalRepresentation());
+            // Region statistics for EntityCacheMetrics
+            hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+    /**
+     * Creates a cache manager of its own, so that application contexts sharing
+     * the class loader (as in tests) do not share regions. Hibernate closes
+     * it when the entity manager factory is closed.
+     */
+    private static CacheManager createCacheManager(EntityCacheProperties entityCacheProperties) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("urn:bmpresence:entity-cache:" + UUID.randomUUID()),
+                        EntityCacheConfig.class.getClassLoader());
+
+        cacheManager.createCache(USERS_REGION, bounded(entityCacheProperties.getUsers()));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                bounded(entityCacheProperties.getQueries()));
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    private static CaffeineConfiguration<Object, Object> bounded(EntityCacheProperties.Region region) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(region.getMaxSize()));
+        configuration.setExpireAfterWrite(OptionalLong.of(region.getTtl().toNanos()));
+        return configuration;
+    }
+}
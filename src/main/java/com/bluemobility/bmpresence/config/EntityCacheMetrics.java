@@ -0,0 +1,62 @@
+package com.bluemobility.bmpresence.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the hit, miss and put counts of the second-level cache regions
+ * and of the query cache, read from Hibernate's statistics.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityCacheMetrics implements MeterBinder {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final EntityCacheProperties entityCacheProperties;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!entityCacheProperties.isEnabled()) {
+            return;
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        for (String region : List.of(EntityCacheConfig.USERS_REGION)) {
+            // Looked up on every read: clearing the statistics replaces the region's object
+            counter(registry, "hibernate.second.level.cache.requests", region, "hit", statistics,
+                    current -> current.getDomainDataRegionStatistics(region).getHitCount());
+            counter(registry, "hibernate.second.level.cache.requests", region, "miss", statistics,
+                    current -> current.getDomainDataRegionStatistics(region).getMissCount());
+            counter(registry, "hibernate.second.level.cache.puts", region, null, statistics,
+                    current -> current.getDomainDataRegionStatistics(region).getPutCount());
+        }
+
+        counter(registry, "hibernate.cache.query.requests", null, "hit", statistics,
+                Statistics::getQueryCacheHitCount);
+        counter(registry, "hibernate.cache.query.requests", null, "miss", statistics,
+                Statistics::getQueryCacheMissCount);
+        counter(registry, "hibernate.cache.query.puts", null, null, statistics,
+                Statistics::getQueryCachePutCount);
+    }
+
+    private static <T> void counter(MeterRegistry registry, String name, String region, String result, T source,
+            ToDoubleFunction<T> count) {
+        FunctionCounter.Builder<T> builder = FunctionCounter.builder(name, source, count);
+        if (region != null) {
+            builder.tag("region", region);
+        }
+        if (result != null) {
+            builder.tag("result", result);
+        }
+        builder.register(registry);
+    }
+}
@@ -0,0 +1,49 @@
+package com.bluemobility.bmpresence.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "entity-cache")
+@Data
+public class EntityCacheProperties {
+
+    /**
+     * Si está activo, Hibernate guarda los usuarios en la caché de segundo
+     * nivel y los resultados de findByActiveTrue en la caché de consultas.
+     * Los recursos los mantiene en memoria PresenceResourceCatalog
+     */
+    private boolean enabled = true;
+
+    /**
+     * Región de la entidad User
+     */
+    private Region users = new Region(10_000, Duration.ofMinutes(5));
+
+    /**
+     * Región de los resultados de consultas (IDs de las entidades)
+     */
+    private Region queries = new Region(1_000, Duration.ofMinutes(5));
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Region {
+        /**
+         * Número máximo de entradas de la región
+         */
+        private long maxSize;
+
+        /**
+         * Tiempo máximo que una entrada permanece en la región. Acota la
+         * antigüedad de los cambios hechos por otras instancias o
+         * directamente en la base de datos.
+         */
+        private Duration ttl;
+    }
+}
@@ -1,8 +1,11 @@
 package com.bluemobility.bmpresence.config;
 
+import com.bluemobility.bmpresence.dto.UserPrincipal;
 import com.bluemobility.bmpresence.service.TokenService;
-import com.bluemobility.bmpresence.service.UserService;
-import com.bluemobility.bmpresence.model.User;
+import com.bluemobility.bmpresence.service.UserPrincipalCache;
+import com.bluemobility.bmpresence.service.VerifiedTokenCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.Nonnull;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -25,8 +28,9 @@ import java.util.Collections;
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final TokenService tokenService;
-    private final UserService userService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final UserPrincipalCache userPrincipalCache;
+    private final MeterRegistry meterRegistry;
 
     @Override
     protected void doFilterInternal(
@@ -43,48 +47,60 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        try {
-            // Extraer el token (quitar "Bearer ")
-            String token = authHeader.substring(7);
+        // Extraer el token (quitar "Bearer ")
+        String token = authHeader.substring(7);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = authenticate(token, request);
+        sample.stop(Timer.builder("auth.filter")
+                .description("Time spent authenticating a request with a bearer token")
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+
+        filterChain.doFilter(request, response);
+    }
 
-            // Validar el token
-            if (!tokenService.isTokenValid(token)) {
+    /**
+     * Authenticates the request with the token, if valid, and returns the
+     * outcome used to tag the filter timer.
+     */
+    private String authenticate(String token, HttpServletRequest request) {
+        try {
+            // Validate the token (signature checked only on a cache miss)
+            TokenService.VerifiedToken verifiedToken = verifiedTokenCache.verify(token);
+            if (verifiedToken == null) {
                 log.warn("Invalid or expired JWT token");
-                filterChain.doFilter(request, response);
-                return;
+                return "invalid";
             }
 
             // Get the userId from the token
-            Integer userId = tokenService.getUserIdFromToken(token);
+            Integer userId = verifiedToken.userId();
             if (userId == null) {
                 log.warn("Could not extract userId from token");
-                filterChain.doFilter(request, response);
-                return;
+                return "invalid";
             }
 
             // Check if already authenticated
             if (SecurityContextHolder.getContext().getAuthentication() != null) {
-                filterChain.doFilter(request, response);
-                return;
+                return "already-authenticated";
             }
 
-            // Get the user from the database
-            User user = userService.findById(userId);
+            // Get the user snapshot (loaded from the database only on a cache miss)
+            UserPrincipal principal = userPrincipalCache.get(userId);
 
-            if (user == null || !user.getActive()) {
+            if (principal == null || !principal.isActive()) {
                 log.warn("User not found or inactive: {}", userId);
-                filterChain.doFilter(request, response);
-                return;
+                return "inactive";
             }
 
             // Create authorities based on role
-            SimpleGrantedAuthority authority = user.getIsAdmin()
+            SimpleGrantedAuthority authority = principal.isAdministrator()
                     ? new SimpleGrantedAuthority("ROLE_ADMIN")
                     : new SimpleGrantedAuthority("ROLE_USER");
 
             // Create the authentication object
             UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                    user,
+                    principal,
                     null,
                     Collections.singletonList(authority));
 
@@ -93,12 +109,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             // Set authentication in the security context
             SecurityContextHolder.getContext().setAuthentication(authentication);
 
-            log.debug("User authenticated successfully: {} (ID: {})", user.getUsername(), userId);
-
+            log.debug("User authenticated successfully: {} (ID: {})", principal.username(), userId);
+            return "authenticated";
         } catch (Exception e) {
             log.error("Error processing JWT token: {}", e.getMessage());
+            return "error";
         }
-
-        filterChain.doFilter(request, response);
     }
 }
@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 @ConfigurationProperties(prefix = "jwt")
 @Data
@@ -20,6 +22,16 @@ public class JwtConfigProperties {
      */
     private Expiration expiration = new Expiration();
 
+    /**
+     * Configuración de la caché de tokens ya verificados
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * Configuración de la lista de tokens revocados
+     */
+    private Revocation revocation = new Revocation();
+
     @Data
     public static class Expiration {
         /**
@@ -27,4 +39,44 @@ public class JwtConfigProperties {
          */
         private int days = 30;
     }
+
+    @Data
+    public static class Cache {
+        /**
+         * Número máximo de tokens verificados en caché
+         */
+        private long maxSize = 10_000;
+
+        /**
+         * Tiempo máximo que un token verificado permanece en caché. Nunca se
+         * supera la expiración del propio token.
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Revocation {
+        /**
+         * Número de tokens revocados (no expirados) para el que se dimensiona
+         * el filtro previo. Con más entradas aumentan los falsos positivos,
+         * que solo cuestan una consulta al conjunto exacto.
+         */
+        private int expectedEntries = 100_000;
+
+        /**
+         * Tasa de falsos positivos del filtro previo con expectedEntries
+         * entradas
+         */
+        private double falsePositiveRate = 0.01;
+
+        /**
+         * Intervalo de lectura de las revocaciones hechas por otras instancias
+         */
+        private Duration syncInterval = Duration.ofSeconds(30);
+
+        /**
+         * Intervalo de borrado de las revocaciones de tokens ya expirados
+         */
+        private Duration purgeInterval = Duration.ofHours(1);
+    }
 }
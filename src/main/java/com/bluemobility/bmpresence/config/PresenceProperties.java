@@ -0,0 +1,129 @@
+package com.bluemobility.bmpresence.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "presence")
+@Data
+public class PresenceProperties {
+
+    /**
+     * Buffer en memoria de estados de conexión y última actividad
+     */
+    private Buffer buffer = new Buffer();
+
+    /**
+     * Canal SSE con los cambios de presencia de los usuarios
+     */
+    private Stream stream = new Stream();
+
+    /**
+     * Registro en memoria de los usuarios conectados
+     */
+    private Registry registry = new Registry();
+
+    /**
+     * Instantánea en memoria del catálogo de recursos
+     */
+    private Catalog catalog = new Catalog();
+
+    /**
+     * Versiones de las colecciones usadas como ETag de los listados
+     */
+    private Versions versions = new Versions();
+
+    @Data
+    public static class Buffer {
+        /**
+         * Intervalo entre escrituras del buffer en la base de datos
+         */
+        private Duration flushInterval = Duration.ofSeconds(5);
+
+        /**
+         * Número máximo de usuarios actualizados por sentencia
+         */
+        private int batchSize = 500;
+    }
+
+    @Data
+    public static class Stream {
+        /**
+         * Tiempo máximo de una conexión; el cliente se vuelve a conectar y
+         * recibe una nueva instantánea
+         */
+        private Duration timeout = Duration.ofMinutes(30);
+
+        /**
+         * Intervalo con el que los cambios acumulados se reparten a los
+         * suscriptores
+         */
+        private Duration dispatchInterval = Duration.ofMillis(250);
+
+        /**
+         * Intervalo entre comentarios de keep-alive enviados a cada suscriptor
+         */
+        private Duration heartbeatInterval = Duration.ofSeconds(25);
+
+        /**
+         * Número máximo de usuarios con cambios pendientes por suscriptor; si
+         * se supera, los cambios se descartan y se envía una nueva instantánea
+         */
+        private int maxPending = 1_000;
+
+        /**
+         * Un cambio que solo actualiza la última actividad se publica si la
+         * anterior publicada es más antigua que este intervalo
+         */
+        private Duration activityResolution = Duration.ofMinutes(1);
+
+        /**
+         * Intervalo con el que se leen de la base de datos los cambios de
+         * presencia registrados por otras instancias
+         */
+        private Duration syncInterval = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Registry {
+        /**
+         * Tiempo sin actividad tras el cual un usuario pasa a estar
+         * desconectado
+         */
+        private Duration ttl = Duration.ofMinutes(2);
+
+        /**
+         * Resolución de la rueda de temporizadores que gestiona la caducidad
+         */
+        private Duration tick = Duration.ofSeconds(1);
+
+        /**
+         * Intervalo entre barridos de los usuarios conectados en la base de
+         * datos sin actividad reciente en ninguna instancia
+         */
+        private Duration sweepInterval = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Catalog {
+        /**
+         * Intervalo mínimo entre comprobaciones de la versión de los recursos;
+         * si ha cambiado, la instantánea se vuelve a cargar. Junto con
+         * {@code presence.versions.sync-interval} acota lo que tardan en
+         * verse las escrituras de otras instancias.
+         */
+        private Duration versionCheckInterval = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Versions {
+        /**
+         * Intervalo entre lecturas de las versiones escritas por otras
+         * instancias
+         */
+        private Duration syncInterval = Duration.ofSeconds(5);
+    }
+}
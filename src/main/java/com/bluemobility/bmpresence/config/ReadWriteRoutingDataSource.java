@@ -0,0 +1,104 @@
+package com.bluemobility.bmpresence.config;
+
+import com.bluemobility.bmpresence.dto.UserPrincipal;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Sends the connections of read-only transactions to the read replica and
+ * every other connection to the primary database.
+ *
+ * <p>The route is chosen when a connection is obtained, so this data source
+ * must sit behind a {@link LazyConnectionDataSourceProxy}: the transaction
+ * manager opens the connection before it publishes whether the transaction
+ * is read-only, and the proxy delays the real connection until the first
+ * statement.
+ *
+ * <p>The replica lags behind the primary, so a user could miss a booking
+ * they just made. Once a read-write transaction of an authenticated user
+ * commits, that user's reads go to the primary for
+ * {@code datasource.replica.read-your-writes.window}. Reads that must never
+ * lag, such as the access checks of the JWT filter, run in read-write
+ * transactions to stay on the primary.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Route {
+        PRIMARY, REPLICA
+    }
+
+    /** IDs of users whose last write may not have reached the replica yet */
+    private final Cache<Integer, Boolean> recentWriters;
+    private final Counter writeRoutes;
+    private final Counter readRoutes;
+    private final Counter readYourWritesRoutes;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica,
+            ReplicaProperties.ReadYourWrites readYourWrites, MeterRegistry meterRegistry) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(readYourWrites.getMaxUsers())
+                .expireAfterWrite(readYourWrites.getWindow())
+                .build();
+        this.writeRoutes = routeCounter("write", meterRegistry);
+        this.readRoutes = routeCounter("read", meterRegistry);
+        this.readYourWritesRoutes = routeCounter("read-your-writes", meterRegistry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            recordWriteAfterCommit();
+            writeRoutes.increment();
+            return Route.PRIMARY;
+        }
+
+        Integer userId = currentUserId();
+        if (userId != null && recentWriters.getIfPresent(userId) != null) {
+            readYourWritesRoutes.increment();
+            return Route.PRIMARY;
+        }
+        readRoutes.increment();
+        return Route.REPLICA;
+    }
+
+    private void recordWriteAfterCommit() {
+        Integer userId = currentUserId();
+        if (userId == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(userId, Boolean.TRUE);
+            }
+        });
+    }
+
+    private static Integer currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.id();
+        }
+        return null;
+    }
+
+    private static Counter routeCounter(String route, MeterRegistry meterRegistry) {
+        return Counter.builder("datasource.routing")
+                .description("Connections obtained, by the database they were routed to and why")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,67 @@
+package com.bluemobility.bmpresence.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "datasource.replica")
+@Data
+public class ReplicaProperties {
+
+    /**
+     * Si está activo, las transacciones de solo lectura usan la réplica y
+     * las demás la base de datos principal (spring.datasource.*)
+     */
+    private boolean enabled = false;
+
+    /**
+     * URL JDBC de la réplica
+     */
+    private String url;
+
+    /**
+     * Usuario de la réplica
+     */
+    private String username;
+
+    /**
+     * Contraseña de la réplica
+     */
+    private String password;
+
+    /**
+     * Driver JDBC de la réplica. Si está vacío se usa el de la base de datos
+     * principal
+     */
+    private String driverClassName;
+
+    /**
+     * Tamaño máximo del pool de conexiones de la réplica
+     */
+    private int maximumPoolSize = 10;
+
+    /**
+     * Lecturas de un usuario servidas por la base de datos principal después
+     * de que escriba, para que vea sus propios cambios aunque la réplica vaya
+     * con retraso
+     */
+    private ReadYourWrites readYourWrites = new ReadYourWrites();
+
+    @Data
+    public static class ReadYourWrites {
+        /**
+         * Tiempo tras una escritura durante el que las lecturas del mismo
+         * usuario van a la base de datos principal. Debe superar el retraso
+         * habitual de la réplica.
+         */
+        private Duration window = Duration.ofSeconds(5);
+
+        /**
+         * Número máximo de usuarios con escrituras recientes en memoria
+         */
+        private long maxUsers = 100_000;
+    }
+}
@@ -1,13 +1,19 @@
 package com.bluemobility.bmpresence.config;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -21,17 +27,31 @@ public class SecurityConfig {
         private final JwtAuthenticationFilter jwtAuthenticationFilter;
 
         @Bean
-        public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+        public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                        @Value("${server.port:8080}") int serverPort,
+                        @Value("${management.server.port:-1}") int managementPort) throws Exception {
+                // Only on a separate management port, which must not be reachable from the public network
+                RequestMatcher onManagementPort = request -> managementPort > 0 && managementPort != serverPort
+                                && request.getLocalPort() == managementPort;
                 http
                                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                                 .csrf(csrf -> csrf.disable())
                                 .sessionManagement(session -> session
                                                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                                 .authorizeHttpRequests(auth -> auth
+                                                // Streamed responses finish on an async dispatch of an
+                                                // already authorized request
+                                                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                                                 .requestMatchers("/v3/api-docs/**", "/swagger-ui/**",
                                                                 "/swagger-ui.html")
                                                 .permitAll()
                                                 .requestMatchers("/actuator/health/**").permitAll()
+                                                // Scraped without a token on the management port only
+                                                .requestMatchers(new AndRequestMatcher(onManagementPort,
+                                                                PathPatternRequestMatcher.withDefaults()
+                                                                                .matcher(HttpMethod.GET, "/actuator/prometheus")))
+                                                .permitAll()
+                                                .requestMatchers(HttpMethod.POST, "/actuator/**").hasRole("ADMIN")
                                                 .requestMatchers("/api/auth/**").permitAll()
                                                 .anyRequest().authenticated())
                                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
@@ -0,0 +1,38 @@
+package com.bluemobility.bmpresence.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "threading")
+@Data
+public class ThreadingProperties {
+
+    /**
+     * Detección de hilos virtuales bloqueados sobre su hilo portador
+     */
+    private PinningMonitor pinningMonitor = new PinningMonitor();
+
+    @Data
+    public static class PinningMonitor {
+        /**
+         * Si está activo, los eventos JFR jdk.VirtualThreadPinned se registran
+         * en el log y en las métricas. Solo se aplica con
+         * spring.threads.virtual.enabled=true
+         */
+        private boolean enabled = true;
+
+        /**
+         * Duración mínima de un bloqueo para ser registrado
+         */
+        private Duration threshold = Duration.ofMillis(20);
+
+        /**
+         * Número de frames de la pila incluidos en el log
+         */
+        private int stackDepth = 8;
+    }
+}
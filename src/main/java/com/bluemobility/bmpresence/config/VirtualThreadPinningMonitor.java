@@ -0,0 +1,94 @@
+package com.bluemobility.bmpresence.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier thread, typically
+ * because they block inside a {@code synchronized} block or a native call
+ * (JDBC driver, connection pool, our own locks). Each pinning is recorded in
+ * the {@code jvm.threads.virtual.pinned} timer; the first occurrence of each
+ * stack is logged as a warning, repeats at debug level.
+ *
+ * <p>Pinned events come from a JFR recording stream. Without
+ * {@code spring.threads.virtual.enabled} there are no virtual threads to pin,
+ * so the monitor is not created and no recording is started.
+ */
+@Component
+@ConditionalOnBooleanProperty("spring.threads.virtual.enabled")
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_REPORTED_STACKS = 1_000;
+
+    private final ThreadingProperties.PinningMonitor settings;
+    private final Timer pinned;
+    private final Set<String> reportedStacks = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(ThreadingProperties threadingProperties, MeterRegistry meterRegistry) {
+        this.settings = threadingProperties.getPinningMonitor();
+        this.pinned = Timer.builder("jvm.threads.virtual.pinned")
+                .description("Time virtual threads spent pinned to their carrier thread")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!settings.isEnabled() || stream != null) {
+            return;
+        }
+        try {
+            stream = new RecordingStream();
+            stream.enable(PINNED_EVENT).withThreshold(settings.getThreshold()).withStackTrace();
+            stream.onEvent(PINNED_EVENT, this::onPinned);
+            stream.startAsync();
+            log.info("Virtual thread pinning monitor started (threshold {} ms)", settings.getThreshold().toMillis());
+        } catch (Exception e) {
+            // JFR may be unavailable in some runtimes; the application works without it
+            log.warn("Virtual thread pinning monitor not available: {}", e.getMessage());
+            stream = null;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.record(event.getDuration());
+
+        String stack = event.getStackTrace() == null ? "unknown"
+                : event.getStackTrace().getFrames().stream()
+                        .limit(settings.getStackDepth())
+                        .map(VirtualThreadPinningMonitor::format)
+                        .collect(Collectors.joining(" <- "));
+        if (reportedStacks.size() < MAX_REPORTED_STACKS && reportedStacks.add(stack)) {
+            log.warn("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), stack);
+        } else {
+            log.debug("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), stack);
+        }
+    }
+
+    private static String format(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -1,13 +1,20 @@
 package com.bluemobility.bmpresence.controller;
 
+import com.bluemobility.bmpresence.config.AuthProperties;
 import com.bluemobility.bmpresence.dto.UserDTO;
+import com.bluemobility.bmpresence.exception.PasswordHashingRejectedException;
+import com.bluemobility.bmpresence.exception.RateLimitExceededException;
 import com.bluemobility.bmpresence.model.User;
+import com.bluemobility.bmpresence.service.AuthRateLimiter;
 import com.bluemobility.bmpresence.service.AuthenticationService;
 import com.bluemobility.bmpresence.service.TokenService;
+import com.bluemobility.bmpresence.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -20,9 +27,15 @@ public class AuthenticationController {
 
     private final AuthenticationService authenticationService;
     private final TokenService tokenService;
+    private final UserService userService;
+    private final AuthProperties authProperties;
+    private final AuthRateLimiter rateLimiter;
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest request) {
+    public ResponseEntity<?> login(@RequestBody LoginRequest request, HttpServletRequest httpRequest) {
+        rateLimiter.check("login", authProperties.getRateLimit().getLogin(), httpRequest.getRemoteAddr(),
+                request.getUsername());
+
         AuthenticationService.AuthenticationResponse response = authenticationService.login(request.getUsername(),
                 request.getPassword());
 
@@ -40,7 +53,10 @@ public class AuthenticationController {
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody RegisterRequest request) {
+    public ResponseEntity<?> register(@RequestBody RegisterRequest request, HttpServletRequest httpRequest) {
+        rateLimiter.check("register", authProperties.getRateLimit().getRegister(), httpRequest.getRemoteAddr(),
+                request.getUsername());
+
         AuthenticationService.AuthenticationResponse response = authenticationService.registerUser(
                 request.getName(),
                 request.getLastName(),
@@ -61,8 +77,9 @@ public class AuthenticationController {
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logout() {
-        authenticationService.logout();
+    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        String token = authHeader != null && authHeader.startsWith("Bearer ") ? authHeader.substring(7) : null;
+        authenticationService.logout(token);
         return ResponseEntity.ok(new MessageResponse(
                 true,
                 "Logout effettuato con successo"));
@@ -105,14 +122,13 @@ public class AuthenticationController {
 
     @PostMapping("/restore-session")
     public ResponseEntity<?> restoreSession(@RequestBody RestoreSessionRequest request) {
-        boolean success = authenticationService.restoreSession(request.getToken());
+        User restoredUser = authenticationService.restoreSession(request.getToken());
 
-        if (success) {
-            User currentUser = authenticationService.getCurrentUser();
+        if (restoredUser != null) {
             return ResponseEntity.ok(new SessionResponse(
                     true,
                     "Sessione restaurata con successo",
-                    UserDTO.fromUser(currentUser)));
+                    userService.toDTO(restoredUser)));
         } else {
             return ResponseEntity.badRequest().body(new ErrorResponse(
                     false,
@@ -122,10 +138,13 @@ public class AuthenticationController {
 
     @PostMapping("/renew-token")
     public ResponseEntity<?> renewToken(@RequestBody RenewTokenRequest request, HttpServletRequest httpRequest) {
+        rateLimiter.check("renew-token", authProperties.getRateLimit().getRenewToken(), httpRequest.getRemoteAddr(),
+                null);
+
         // Log the request to track multiple calls
         String userAgent = httpRequest.getHeader("User-Agent");
         String referer = httpRequest.getHeader("Referer");
-        log.warn("⚠️ Call to /renew-token - User-Agent: {}, Referer: {}", userAgent, referer);
+        log.debug("Call to /renew-token - User-Agent: {}, Referer: {}", userAgent, referer);
 
         // Validate that a token was provided
         if (request.getToken() == null || request.getToken().isEmpty()) {
@@ -174,7 +193,7 @@ public class AuthenticationController {
         User currentUser = authenticationService.getCurrentUser();
 
         if (currentUser != null) {
-            return ResponseEntity.ok(UserDTO.fromUser(currentUser));
+            return ResponseEntity.ok(userService.toDTO(currentUser));
         } else {
             return ResponseEntity.badRequest().body(new ErrorResponse(
                     false,
@@ -182,6 +201,22 @@ public class AuthenticationController {
         }
     }
 
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<ErrorResponse> handlePasswordHashingRejected(PasswordHashingRejectedException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER,
+                        String.valueOf(authProperties.getPasswordHashing().getRetryAfter().toSeconds()))
+                .body(new ErrorResponse(false, ex.getMessage()));
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ErrorResponse> handleRateLimitExceeded(RateLimitExceededException ex) {
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(new ErrorResponse(false, ex.getMessage()));
+    }
+
     // DTOs
     @Data
     static class LoginRequest {
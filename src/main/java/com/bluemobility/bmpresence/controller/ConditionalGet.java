@@ -0,0 +1,31 @@
+package com.bluemobility.bmpresence.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.function.Supplier;
+
+/**
+ * Conditional GET for the versioned list endpoints.
+ */
+final class ConditionalGet {
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * Answers 304 if the request's {@code If-None-Match} matches the ETag,
+     * without calling {@code body}; otherwise returns the body tagged with it.
+     * Responses must be revalidated, so clients always send the ETag back.
+     */
+    static <T> ResponseEntity<T> ifNoneMatch(WebRequest request, String etag, Supplier<T> body) {
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(body.get());
+    }
+}
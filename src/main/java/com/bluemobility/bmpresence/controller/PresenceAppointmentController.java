@@ -1,13 +1,22 @@
 package com.bluemobility.bmpresence.controller;
 
+import com.bluemobility.bmpresence.dto.AppointmentImportReport;
+import com.bluemobility.bmpresence.dto.AppointmentPage;
 import com.bluemobility.bmpresence.exception.AppointmentConflictException;
 import com.bluemobility.bmpresence.model.PresenceAppointment;
+import com.bluemobility.bmpresence.service.AppointmentImportService;
+import com.bluemobility.bmpresence.service.CollectionVersions;
+import com.bluemobility.bmpresence.service.ExportService;
 import com.bluemobility.bmpresence.service.PresenceAppointmentService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -18,15 +27,27 @@ import java.util.List;
 public class PresenceAppointmentController {
 
     private final PresenceAppointmentService appointmentService;
+    private final CollectionVersions collectionVersions;
+    private final ExportService exportService;
+    private final AppointmentImportService importService;
 
     @GetMapping
-    public ResponseEntity<List<PresenceAppointment>> getAllAppointments() {
-        return ResponseEntity.ok(appointmentService.findAll());
+    public ResponseEntity<List<PresenceAppointment>> getAllAppointments(WebRequest request) {
+        return ConditionalGet.ifNoneMatch(request, collectionVersions.etag(CollectionVersions.Kind.APPOINTMENTS),
+                appointmentService::findAll);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAppointments() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(exportService::exportAppointments);
     }
 
     @GetMapping("/active")
-    public ResponseEntity<List<PresenceAppointment>> getActiveAppointments() {
-        return ResponseEntity.ok(appointmentService.findAllActive());
+    public ResponseEntity<List<PresenceAppointment>> getActiveAppointments(WebRequest request) {
+        return ConditionalGet.ifNoneMatch(request, collectionVersions.etag(CollectionVersions.Kind.APPOINTMENTS),
+                appointmentService::findAllActive);
     }
 
     @GetMapping("/{id}")
@@ -41,6 +62,17 @@ public class PresenceAppointmentController {
         return ResponseEntity.ok(appointmentService.findByDateRange(start, end));
     }
 
+    @GetMapping("/range/page")
+    public ResponseEntity<AppointmentPage> getAppointmentPageByDateRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) Integer resourceId,
+            @RequestParam(required = false) String subject,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(appointmentService.findPageByDateRange(start, end, resourceId, subject, cursor, size));
+    }
+
     @GetMapping("/resource/{resourceId}")
     public ResponseEntity<List<PresenceAppointment>> getAppointmentsByResource(@PathVariable Integer resourceId) {
         return ResponseEntity.ok(appointmentService.findByResourceId(resourceId));
@@ -52,6 +84,17 @@ public class PresenceAppointmentController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdAppointment);
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AppointmentImportReport> importAppointments(
+            @RequestBody List<PresenceAppointment> appointments) {
+        return ResponseEntity.ok(importService.importAppointments(appointments.iterator()));
+    }
+
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<AppointmentImportReport> importAppointmentStream(InputStream body) {
+        return ResponseEntity.ok(importService.importAppointments(body));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<PresenceAppointment> updateAppointment(@PathVariable Integer id,
             @RequestBody PresenceAppointment appointment) {
@@ -70,6 +113,11 @@ public class PresenceAppointmentController {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
     }
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleBadRequestException(IllegalArgumentException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleException(RuntimeException ex) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
@@ -1,11 +1,16 @@
 package com.bluemobility.bmpresence.controller;
 
 import com.bluemobility.bmpresence.model.PresenceResource;
+import com.bluemobility.bmpresence.service.CollectionVersions;
+import com.bluemobility.bmpresence.service.ExportService;
 import com.bluemobility.bmpresence.service.PresenceResourceService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.util.List;
 
 @RestController
@@ -15,15 +20,26 @@ import java.util.List;
 public class PresenceResourceController {
 
     private final PresenceResourceService resourceService;
+    private final CollectionVersions collectionVersions;
+    private final ExportService exportService;
 
     @GetMapping
-    public ResponseEntity<List<PresenceResource>> getAllResources() {
-        return ResponseEntity.ok(resourceService.findAll());
+    public ResponseEntity<List<PresenceResource>> getAllResources(WebRequest request) {
+        return ConditionalGet.ifNoneMatch(request, collectionVersions.etag(CollectionVersions.Kind.RESOURCES),
+                resourceService::findAll);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportResources() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(exportService::exportResources);
     }
 
     @GetMapping("/active")
-    public ResponseEntity<List<PresenceResource>> getActiveResources() {
-        return ResponseEntity.ok(resourceService.findAllActive());
+    public ResponseEntity<List<PresenceResource>> getActiveResources(WebRequest request) {
+        return ConditionalGet.ifNoneMatch(request, collectionVersions.etag(CollectionVersions.Kind.RESOURCES),
+                resourceService::findAllActive);
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,26 @@
+package com.bluemobility.bmpresence.controller;
+
+import com.bluemobility.bmpresence.service.PresenceResourceCatalog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "resourcecatalog")
+@RequiredArgsConstructor
+public class ResourceCatalogEndpoint {
+
+    private final PresenceResourceCatalog resourceCatalog;
+
+    @ReadOperation
+    public PresenceResourceCatalog.Stats stats() {
+        return resourceCatalog.stats();
+    }
+
+    @WriteOperation
+    public PresenceResourceCatalog.Stats refresh() {
+        return resourceCatalog.refresh();
+    }
+}
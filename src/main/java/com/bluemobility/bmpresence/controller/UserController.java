@@ -2,11 +2,18 @@ package com.bluemobility.bmpresence.controller;
 
 import com.bluemobility.bmpresence.dto.UserDTO;
 import com.bluemobility.bmpresence.model.User;
+import com.bluemobility.bmpresence.service.CollectionVersions;
+import com.bluemobility.bmpresence.service.ExportService;
+import com.bluemobility.bmpresence.service.PresenceStreamService;
 import com.bluemobility.bmpresence.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -17,54 +24,72 @@ import java.util.stream.Collectors;
 public class UserController {
 
     private final UserService userService;
+    private final CollectionVersions collectionVersions;
+    private final ExportService exportService;
+    private final PresenceStreamService presenceStreamService;
 
     @GetMapping
-    public ResponseEntity<List<UserDTO>> getAllUsers() {
-        return ResponseEntity.ok(userService.findAll().stream()
-                .map(UserDTO::fromUser)
-                .collect(Collectors.toList()));
+    public ResponseEntity<List<UserDTO>> getAllUsers(WebRequest request) {
+        return ConditionalGet.ifNoneMatch(request, collectionVersions.etag(CollectionVersions.Kind.USERS),
+                () -> userService.findAll().stream()
+                        .map(userService::toDTO)
+                        .collect(Collectors.toList()));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(exportService::exportUsers);
     }
 
     @GetMapping("/active")
-    public ResponseEntity<List<UserDTO>> getActiveUsers() {
-        return ResponseEntity.ok(userService.findAllActive().stream()
-                .map(UserDTO::fromUser)
-                .collect(Collectors.toList()));
+    public ResponseEntity<List<UserDTO>> getActiveUsers(WebRequest request) {
+        return ConditionalGet.ifNoneMatch(request, collectionVersions.etag(CollectionVersions.Kind.USERS),
+                () -> userService.findAllActive().stream()
+                        .map(userService::toDTO)
+                        .collect(Collectors.toList()));
     }
 
     @GetMapping("/online")
-    public ResponseEntity<List<UserDTO>> getOnlineUsers() {
-        return ResponseEntity.ok(userService.findOnlineUsers().stream()
-                .map(UserDTO::fromUser)
-                .collect(Collectors.toList()));
+    public ResponseEntity<List<UserDTO>> getOnlineUsers(WebRequest request) {
+        return ConditionalGet.ifNoneMatch(request, collectionVersions.etag(CollectionVersions.Kind.USERS),
+                () -> userService.findOnlineUsers().stream()
+                        .map(userService::toDTO)
+                        .collect(Collectors.toList()));
+    }
+
+    @GetMapping(value = "/online/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOnlineUsers() {
+        return presenceStreamService.subscribe();
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<UserDTO> getUserById(@PathVariable Integer id) {
-        return ResponseEntity.ok(UserDTO.fromUser(userService.findById(id)));
+        return ResponseEntity.ok(userService.toDTO(userService.findById(id)));
     }
 
     @GetMapping("/email/{email}")
     public ResponseEntity<UserDTO> getUserByEmail(@PathVariable String email) {
-        return ResponseEntity.ok(UserDTO.fromUser(userService.findByEmail(email)));
+        return ResponseEntity.ok(userService.toDTO(userService.findByEmail(email)));
     }
 
     @PostMapping
     public ResponseEntity<UserDTO> createUser(@RequestBody User user) {
         User createdUser = userService.create(user);
-        return ResponseEntity.status(HttpStatus.CREATED).body(UserDTO.fromUser(createdUser));
+        return ResponseEntity.status(HttpStatus.CREATED).body(userService.toDTO(createdUser));
     }
 
     @PutMapping("/{id}")
     public ResponseEntity<UserDTO> updateUser(@PathVariable Integer id, @RequestBody User user) {
         User updatedUser = userService.update(id, user);
-        return ResponseEntity.ok(UserDTO.fromUser(updatedUser));
+        return ResponseEntity.ok(userService.toDTO(updatedUser));
     }
 
     @PutMapping("/{id}/online-status")
     public ResponseEntity<UserDTO> updateOnlineStatus(@PathVariable Integer id, @RequestParam Boolean isOnline) {
         User updatedUser = userService.updateOnlineStatus(id, isOnline);
-        return ResponseEntity.ok(UserDTO.fromUser(updatedUser));
+        return ResponseEntity.ok(userService.toDTO(updatedUser));
     }
 
     @DeleteMapping("/{id}")
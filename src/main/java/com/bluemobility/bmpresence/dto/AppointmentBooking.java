@@ -0,0 +1,11 @@
+package com.bluemobility.bmpresence.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * An existing appointment on one of its resources, loaded to check a batch of
+ * new bookings for conflicts.
+ */
+public record AppointmentBooking(Integer appointmentId, String subject, Integer resourceId,
+        LocalDateTime startTime, LocalDateTime endTime, String recurrenceRule) {
+}
@@ -0,0 +1,8 @@
+package com.bluemobility.bmpresence.dto;
+
+/**
+ * An existing appointment that conflicts with a booking on one of its
+ * resources.
+ */
+public record AppointmentConflict(Integer resourceId, Integer appointmentId) {
+}
@@ -0,0 +1,46 @@
+package com.bluemobility.bmpresence.dto;
+
+import com.bluemobility.bmpresence.model.PresenceAppointment;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of the last appointment returned in a page, ordered by
+ * (startTime, id). Sent to clients as an opaque Base64 string.
+ */
+public record AppointmentCursor(LocalDateTime startTime, Integer id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static AppointmentCursor of(PresenceAppointment appointment) {
+        return new AppointmentCursor(appointment.getStartTime(), appointment.getId());
+    }
+
+    public String encode() {
+        String raw = startTime + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encode()}. Returns {@code null} for
+     * a missing cursor and throws {@link IllegalArgumentException} for an
+     * invalid one.
+     */
+    public static AppointmentCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return new AppointmentCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Integer.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursore non valido");
+        }
+    }
+}
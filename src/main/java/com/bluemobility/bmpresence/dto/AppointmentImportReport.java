@@ -0,0 +1,17 @@
+package com.bluemobility.bmpresence.dto;
+
+import java.util.List;
+
+/**
+ * Result of a bulk appointment import, with one entry per row in request
+ * order.
+ */
+public record AppointmentImportReport(int total, int created, int rejected, List<AppointmentImportResult> results) {
+
+    public static AppointmentImportReport of(List<AppointmentImportResult> results) {
+        int created = (int) results.stream()
+                .filter(result -> result.status() == AppointmentImportResult.Status.CREATED)
+                .count();
+        return new AppointmentImportReport(results.size(), created, results.size() - created, results);
+    }
+}
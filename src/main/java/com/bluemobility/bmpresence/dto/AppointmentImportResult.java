@@ -0,0 +1,31 @@
+package com.bluemobility.bmpresence.dto;
+
+/**
+ * Outcome of one row of a bulk appointment import. {@code row} is the
+ * 1-based position of the row in the request.
+ */
+public record AppointmentImportResult(int row, Status status, Integer appointmentId, String message) {
+
+    public enum Status {
+        CREATED,
+        CONFLICT,
+        INVALID,
+        FAILED
+    }
+
+    public static AppointmentImportResult created(int row, Integer appointmentId) {
+        return new AppointmentImportResult(row, Status.CREATED, appointmentId, null);
+    }
+
+    public static AppointmentImportResult conflict(int row, String message) {
+        return new AppointmentImportResult(row, Status.CONFLICT, null, message);
+    }
+
+    public static AppointmentImportResult invalid(int row, String message) {
+        return new AppointmentImportResult(row, Status.INVALID, null, message);
+    }
+
+    public static AppointmentImportResult failed(int row, String message) {
+        return new AppointmentImportResult(row, Status.FAILED, null, message);
+    }
+}
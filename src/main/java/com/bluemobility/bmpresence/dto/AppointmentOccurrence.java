@@ -0,0 +1,31 @@
+package com.bluemobility.bmpresence.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * A single occurrence of an appointment, recurring or not.
+ */
+public record AppointmentOccurrence(LocalDateTime startTime, LocalDateTime endTime) {
+
+    /**
+     * Whether the occurrence starts in [from, to) or ends in (from, to], the
+     * rule used to detect booking conflicts.
+     */
+    public boolean startsOrEndsWithin(LocalDateTime from, LocalDateTime to) {
+        boolean startsWithin = !startTime.isBefore(from) && startTime.isBefore(to);
+        boolean endsWithin = endTime.isAfter(from) && !endTime.isAfter(to);
+        return startsWithin || endsWithin;
+    }
+
+    /**
+     * Days on which the occurrence conflicts with a booking under
+     * {@link #startsOrEndsWithin}: the day it starts and the day it ends in.
+     */
+    public Set<LocalDate> conflictDays() {
+        LocalDate startDay = startTime.toLocalDate();
+        LocalDate endDay = endTime.isAfter(startTime) ? endTime.minusNanos(1).toLocalDate() : startDay;
+        return startDay.equals(endDay) ? Set.of(startDay) : Set.of(startDay, endDay);
+    }
+}
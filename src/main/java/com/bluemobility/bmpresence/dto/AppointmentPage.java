@@ -0,0 +1,12 @@
+package com.bluemobility.bmpresence.dto;
+
+import com.bluemobility.bmpresence.model.PresenceAppointment;
+
+import java.util.List;
+
+/**
+ * One page of appointments. {@code nextCursor} is {@code null} on the last
+ * page.
+ */
+public record AppointmentPage(List<PresenceAppointment> items, String nextCursor) {
+}
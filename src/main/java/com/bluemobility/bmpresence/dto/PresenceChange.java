@@ -0,0 +1,11 @@
+package com.bluemobility.bmpresence.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * The latest presence of a user, published when it changes and pushed to
+ * presence stream subscribers. {@code lastActiveAt} is {@code null} when only
+ * the online flag is known.
+ */
+public record PresenceChange(Integer userId, boolean online, LocalDateTime lastActiveAt) {
+}
@@ -0,0 +1,16 @@
+package com.bluemobility.bmpresence.dto;
+
+/**
+ * Compact snapshot of the user fields the authentication filter needs. Used
+ * as the principal of authenticated requests.
+ */
+public record UserPrincipal(Integer id, String username, Boolean active, Boolean isAdmin) {
+
+    public boolean isActive() {
+        return Boolean.TRUE.equals(active);
+    }
+
+    public boolean isAdministrator() {
+        return Boolean.TRUE.equals(isAdmin);
+    }
+}
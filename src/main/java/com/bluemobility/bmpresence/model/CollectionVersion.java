@@ -0,0 +1,21 @@
+package com.bluemobility.bmpresence.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "CollectionVersions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CollectionVersion {
+
+    @Id
+    @Column(name = "Kind", length = 32)
+    private String kind;
+
+    @Column(name = "Version", nullable = false)
+    private Long version;
+}
@@ -1,16 +1,24 @@
 package com.bluemobility.bmpresence.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 @Entity
-@Table(name = "PresenceAppointments")
+@Table(name = "PresenceAppointments", indexes = {
+        @Index(name = "IX_PresenceAppointments_Active_StartTime", columnList = "Active, StartTime, Id, EndTime"),
+        @Index(name = "IX_PresenceAppointments_Subject_EndTime", columnList = "Subject, EndTime") })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,6 +41,14 @@ public class PresenceAppointment {
     @Column(name = "RecurrenceRule", columnDefinition = "TEXT")
     private String recurrenceRule;
 
+    /**
+     * Latest end of an occurrence of the series, set on save; {@code null}
+     * for single appointments and series without an end.
+     */
+    @JsonIgnore
+    @Column(name = "RecurrenceEnd")
+    private LocalDateTime recurrenceEnd;
+
     @Column(name = "Active", nullable = false)
     private Boolean active = true;
 
@@ -46,10 +62,48 @@ public class PresenceAppointment {
     @JdbcTypeCode(SqlTypes.JSON)
     private List<Integer> resourceIds;
 
+    /**
+     * Indexed copy of {@link #resourceIds}, one row per resource, so lookups by
+     * resource can use an index instead of scanning the JSON column. Kept in
+     * sync by {@link #setResourceIds(List)} and on persist.
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ElementCollection
+    @CollectionTable(name = "PresenceAppointmentResources",
+            joinColumns = @JoinColumn(name = "AppointmentId"),
+            indexes = @Index(name = "IX_PresenceAppointmentResources_ResourceId", columnList = "ResourceId, AppointmentId"))
+    @Column(name = "ResourceId", nullable = false)
+    private Set<Integer> resourceMemberships = new HashSet<>();
+
+    public void setResourceIds(List<Integer> resourceIds) {
+        this.resourceIds = resourceIds;
+        syncResourceMemberships();
+    }
+
+    private void syncResourceMemberships() {
+        Set<Integer> current = new HashSet<>();
+        if (resourceIds != null) {
+            resourceIds.stream().filter(Objects::nonNull).forEach(current::add);
+        }
+        // Update in place so Hibernate only writes the rows that changed
+        if (resourceMemberships == null) {
+            // Bound through the all-args constructor, which skips field initializers
+            resourceMemberships = new HashSet<>();
+        }
+        resourceMemberships.retainAll(current);
+        resourceMemberships.addAll(current);
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        if (active == null) {
+            active = true;
+        }
+        syncResourceMemberships();
     }
 
     @PreUpdate
@@ -0,0 +1,28 @@
+package com.bluemobility.bmpresence.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "RevokedTokens")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedToken {
+
+    @Id
+    @Column(name = "TokenId", length = 64)
+    private String tokenId;
+
+    @Column(name = "UserId", nullable = false)
+    private Integer userId;
+
+    @Column(name = "ExpiresAt", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "RevokedAt", nullable = false)
+    private LocalDateTime revokedAt;
+}
@@ -0,0 +1,21 @@
+package com.bluemobility.bmpresence.repository;
+
+import com.bluemobility.bmpresence.model.CollectionVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CollectionVersionRepository extends JpaRepository<CollectionVersion, String> {
+
+    @Query("SELECT v.version FROM CollectionVersion v WHERE v.kind = :kind")
+    Optional<Long> findVersion(@Param("kind") String kind);
+
+    @Modifying
+    @Query("UPDATE CollectionVersion v SET v.version = v.version + 1 WHERE v.kind = :kind")
+    int increment(@Param("kind") String kind);
+}
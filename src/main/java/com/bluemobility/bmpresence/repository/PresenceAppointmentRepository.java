@@ -1,32 +1,144 @@
 package com.bluemobility.bmpresence.repository;
 
+import com.bluemobility.bmpresence.dto.AppointmentBooking;
 import com.bluemobility.bmpresence.model.PresenceAppointment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface PresenceAppointmentRepository extends JpaRepository<PresenceAppointment, Integer> {
 
         List<PresenceAppointment> findByActiveTrue();
 
+        List<PresenceAppointment> findByActiveTrueAndIdGreaterThanOrderByIdAsc(Integer id, Limit limit);
+
+        /**
+         * Streams every appointment by id for exports. Rows are fetched from the
+         * database in chunks and loaded read-only; the caller must consume the
+         * stream inside a transaction and close it.
+         */
+        @QueryHints({
+                @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+                @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+        @Query("SELECT a FROM PresenceAppointment a ORDER BY a.id")
+        Stream<PresenceAppointment> streamAll();
+
         @Query("SELECT a FROM PresenceAppointment a WHERE a.active = true AND a.startTime >= :start AND a.endTime <= :end")
         List<PresenceAppointment> findByDateRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-        @Query(value = "SELECT * FROM PresenceAppointments a WHERE JSON_CONTAINS(a.ResourceIds, CAST(:resourceId AS JSON), '$') AND a.Active = true", nativeQuery = true)
-        List<PresenceAppointment> findByResourceId(@Param("resourceId") Integer resourceId);
+        /**
+         * Returns the next single appointments after the (startTime, id) keyset
+         * that overlap [start, end). No appointment lasts longer than the
+         * maximum duration, so only those starting from {@code earliestStart}
+         * are read, as a range of IX_PresenceAppointments_Active_StartTime.
+         * Filters are optional.
+         */
+        @Query("SELECT a FROM PresenceAppointment a WHERE a.active = true AND " +
+                        "a.startTime >= :earliestStart AND a.startTime < :end AND a.endTime > :start AND " +
+                        "(a.recurrenceRule IS NULL OR a.recurrenceRule = '') AND " +
+                        "(:subject IS NULL OR a.subject = :subject) AND " +
+                        "(:resourceId IS NULL OR :resourceId MEMBER OF a.resourceMemberships) AND " +
+                        "(:afterStart IS NULL OR a.startTime > :afterStart OR " +
+                        "(a.startTime = :afterStart AND a.id > :afterId)) " +
+                        "ORDER BY a.startTime, a.id")
+        List<PresenceAppointment> findOverlapping(
+                        @Param("start") LocalDateTime start,
+                        @Param("end") LocalDateTime end,
+                        @Param("earliestStart") LocalDateTime earliestStart,
+                        @Param("subject") String subject,
+                        @Param("resourceId") Integer resourceId,
+                        @Param("afterStart") LocalDateTime afterStart,
+                        @Param("afterId") Integer afterId,
+                        Limit limit);
 
-        @Query(value = "SELECT * FROM PresenceAppointments a WHERE " +
-                        "a.Subject = :subject AND JSON_CONTAINS(a.ResourceIds, CAST(:resourceId AS JSON), '$') AND a.Active = true AND "
-                        +
-                        "((a.StartTime >= :startOfDay AND a.StartTime < :endOfDay) OR " +
-                        "(a.EndTime > :startOfDay AND a.EndTime <= :endOfDay))", nativeQuery = true)
-        List<PresenceAppointment> findConflictingAppointments(
+        /**
+         * Returns the next recurring series after the (startTime, id) keyset
+         * that start before {@code end} and have not ended by {@code start},
+         * which the caller must expand to find those with an occurrence in the
+         * range. Filters are optional.
+         */
+        @Query("SELECT a FROM PresenceAppointment a WHERE a.active = true AND " +
+                        "a.recurrenceRule IS NOT NULL AND a.recurrenceRule <> '' AND a.startTime < :end AND " +
+                        "(a.recurrenceEnd IS NULL OR a.recurrenceEnd > :start) AND " +
+                        "(:subject IS NULL OR a.subject = :subject) AND " +
+                        "(:resourceId IS NULL OR :resourceId MEMBER OF a.resourceMemberships) AND " +
+                        "(:afterStart IS NULL OR a.startTime > :afterStart OR " +
+                        "(a.startTime = :afterStart AND a.id > :afterId)) " +
+                        "ORDER BY a.startTime, a.id")
+        List<PresenceAppointment> findRecurringOverlapping(
+                        @Param("start") LocalDateTime start,
+                        @Param("end") LocalDateTime end,
                         @Param("subject") String subject,
                         @Param("resourceId") Integer resourceId,
-                        @Param("startOfDay") LocalDateTime startOfDay,
-                        @Param("endOfDay") LocalDateTime endOfDay);
+                        @Param("afterStart") LocalDateTime afterStart,
+                        @Param("afterId") Integer afterId,
+                        Limit limit);
+
+        @Query("SELECT a FROM PresenceAppointment a JOIN a.resourceMemberships r WHERE r = :resourceId AND a.active = true")
+        List<PresenceAppointment> findByResourceId(@Param("resourceId") Integer resourceId);
+
+        /**
+         * Returns, per resource, the appointments of any of the subjects that
+         * overlap [from, to), to check a batch of bookings in one statement.
+         */
+        @Query("SELECT new com.bluemobility.bmpresence.dto.AppointmentBooking(" +
+                        "a.id, a.subject, r, a.startTime, a.endTime, a.recurrenceRule) " +
+                        "FROM PresenceAppointment a JOIN a.resourceMemberships r WHERE " +
+                        "a.subject IN :subjects AND a.endTime > :from AND a.startTime < :to AND " +
+                        "r IN :resourceIds AND a.active = true")
+        List<AppointmentBooking> findBookings(
+                        @Param("subjects") Collection<String> subjects,
+                        @Param("resourceIds") Collection<Integer> resourceIds,
+                        @Param("from") LocalDateTime from,
+                        @Param("to") LocalDateTime to);
+
+        /**
+         * Returns, per resource, the recurring series of any of the subjects
+         * starting before {@code before} and not ended by {@code after}, whose
+         * occurrences may overlap a batch of bookings.
+         */
+        @Query("SELECT new com.bluemobility.bmpresence.dto.AppointmentBooking(" +
+                        "a.id, a.subject, r, a.startTime, a.endTime, a.recurrenceRule) " +
+                        "FROM PresenceAppointment a JOIN a.resourceMemberships r WHERE " +
+                        "a.subject IN :subjects AND r IN :resourceIds AND a.active = true AND " +
+                        "a.recurrenceRule IS NOT NULL AND a.recurrenceRule <> '' AND a.startTime < :before AND " +
+                        "(a.recurrenceEnd IS NULL OR a.recurrenceEnd > :after)")
+        List<AppointmentBooking> findRecurringBookings(
+                        @Param("subjects") Collection<String> subjects,
+                        @Param("resourceIds") Collection<Integer> resourceIds,
+                        @Param("after") LocalDateTime after,
+                        @Param("before") LocalDateTime before);
+
+        /**
+         * Recurring series that start before {@code end} and have not ended
+         * by {@code start}, so may have an occurrence in [start, end).
+         */
+        @Query("SELECT a FROM PresenceAppointment a WHERE a.active = true AND a.recurrenceRule IS NOT NULL " +
+                        "AND a.recurrenceRule <> '' AND a.startTime < :end AND " +
+                        "(a.recurrenceEnd IS NULL OR a.recurrenceEnd > :start)")
+        List<PresenceAppointment> findRecurringBetween(@Param("start") LocalDateTime start,
+                        @Param("end") LocalDateTime end);
+
+        /**
+         * Bounded series saved before their end was stored, to backfill it.
+         */
+        @Query("SELECT a FROM PresenceAppointment a WHERE a.recurrenceEnd IS NULL AND " +
+                        "a.recurrenceRule IS NOT NULL AND " +
+                        "(UPPER(a.recurrenceRule) LIKE '%UNTIL=%' OR UPPER(a.recurrenceRule) LIKE '%COUNT=%')")
+        List<PresenceAppointment> findBoundedRecurringWithoutEnd();
+
+        @Modifying
+        @Query("UPDATE PresenceAppointment a SET a.recurrenceEnd = :recurrenceEnd WHERE a.id = :id")
+        int updateRecurrenceEnd(@Param("id") Integer id, @Param("recurrenceEnd") LocalDateTime recurrenceEnd);
 }
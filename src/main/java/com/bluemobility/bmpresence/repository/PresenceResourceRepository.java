@@ -1,12 +1,27 @@
 package com.bluemobility.bmpresence.repository;
 
 import com.bluemobility.bmpresence.model.PresenceResource;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
-import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface PresenceResourceRepository extends JpaRepository<PresenceResource, Integer> {
 
-    List<PresenceResource> findByActiveTrue();
+    /**
+     * Streams every resource by id for exports. Rows are fetched from the
+     * database in chunks and loaded read-only, bypassing the second-level
+     * cache so an export does not flush it; the caller must consume the
+     * stream inside a transaction and close it.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE") })
+    @Query("SELECT r FROM PresenceResource r ORDER BY r.id")
+    Stream<PresenceResource> streamAll();
 }
@@ -1,10 +1,19 @@
 package com.bluemobility.bmpresence.repository;
 
+import com.bluemobility.bmpresence.dto.UserPrincipal;
+import com.bluemobility.bmpresence.dto.PresenceChange;
 import com.bluemobility.bmpresence.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Integer> {
@@ -13,7 +22,31 @@ public interface UserRepository extends JpaRepository<User, Integer> {
 
     Optional<User> findByUsername(String username);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<User> findByActiveTrue();
 
     List<User> findByIsOnlineTrue();
+
+    @Query("SELECT u.id FROM User u WHERE u.isOnline = true AND (u.lastActiveAt IS NULL OR u.lastActiveAt < :activeBefore)")
+    List<Integer> findInactiveOnlineIds(@Param("activeBefore") LocalDateTime activeBefore);
+
+    @Query("SELECT new com.bluemobility.bmpresence.dto.PresenceChange(u.id, COALESCE(u.isOnline, false), u.lastActiveAt) "
+            + "FROM User u WHERE u.lastUpdated > :since")
+    List<PresenceChange> findPresenceChangedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Streams every user by id for exports. Rows are fetched from the
+     * database in chunks and loaded read-only, bypassing the second-level
+     * cache so an export does not flush it; the caller must consume the
+     * stream inside a transaction and close it.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE") })
+    @Query("SELECT u FROM User u ORDER BY u.id")
+    Stream<User> streamAll();
+
+    @Query("SELECT new com.bluemobility.bmpresence.dto.UserPrincipal(u.id, u.username, u.active, u.isAdmin) FROM User u WHERE u.id = :id")
+    Optional<UserPrincipal> findPrincipalById(@Param("id") Integer id);
 }
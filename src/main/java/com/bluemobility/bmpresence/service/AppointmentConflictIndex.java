@@ -0,0 +1,324 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.AppointmentProperties;
+import com.bluemobility.bmpresence.dto.AppointmentConflict;
+import com.bluemobility.bmpresence.model.PresenceAppointment;
+import com.bluemobility.bmpresence.repository.PresenceAppointmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+/**
+ * In-memory index of active appointments keyed by (subject, resource), used
+ * to detect booking conflicts without querying the database.
+ *
+ * <p>For every key the start and end times are kept in sorted sets, so a
+ * conflict check is a logarithmic range lookup. Recurring series are also
+ * kept per key and expanded (with caching) only for the requested window.
+ * The index is built in the
+ * background once the application is ready and kept in sync after each
+ * committed create, update or delete. Until it is built, {@link #isReady()}
+ * returns {@code false} and callers must fall back to the database.
+ */
+@Service
+@Slf4j
+public class AppointmentConflictIndex {
+
+    private final PresenceAppointmentRepository appointmentRepository;
+    private final AppointmentProperties appointmentProperties;
+    private final RecurrenceService recurrenceService;
+
+    private final Object writeLock = new Object();
+    private volatile State state = new State();
+    private List<Consumer<State>> pendingChanges;
+
+    public AppointmentConflictIndex(PresenceAppointmentRepository appointmentRepository,
+            AppointmentProperties appointmentProperties, RecurrenceService recurrenceService) {
+        this.appointmentRepository = appointmentRepository;
+        this.appointmentProperties = appointmentProperties;
+        this.recurrenceService = recurrenceService;
+    }
+
+    public boolean isReady() {
+        return state.ready;
+    }
+
+    public int size() {
+        return state.byId.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!appointmentProperties.getConflictIndex().isEnabled()) {
+            log.info("Appointment conflict index disabled, conflicts are checked in the database");
+            return;
+        }
+        Thread.ofVirtual().name("appointment-conflict-index").start(this::rebuild);
+    }
+
+    /**
+     * Reloads every active appointment from the database and swaps the result
+     * in. Changes applied while loading are replayed on the new state.
+     */
+    public void rebuild() {
+        synchronized (writeLock) {
+            pendingChanges = new ArrayList<>();
+        }
+
+        try {
+            State fresh = new State();
+            int batchSize = appointmentProperties.getConflictIndex().getLoadBatchSize();
+            Integer lastId = 0;
+            List<PresenceAppointment> batch;
+            do {
+                batch = appointmentRepository.findByActiveTrueAndIdGreaterThanOrderByIdAsc(lastId,
+                        Limit.of(batchSize));
+                for (PresenceAppointment appointment : batch) {
+                    fresh.put(IndexedAppointment.of(appointment));
+                    lastId = appointment.getId();
+                }
+            } while (batch.size() == batchSize);
+
+            synchronized (writeLock) {
+                pendingChanges.forEach(change -> change.accept(fresh));
+                fresh.ready = true;
+                state = fresh;
+            }
+            log.info("Appointment conflict index built with {} appointments", fresh.byId.size());
+        } catch (Exception e) {
+            log.error("Error building appointment conflict index: {}", e.getMessage());
+        } finally {
+            synchronized (writeLock) {
+                pendingChanges = null;
+            }
+        }
+    }
+
+    /**
+     * Adds or replaces the appointment in the index. Inactive appointments are
+     * removed, since they never conflict.
+     */
+    public void index(PresenceAppointment appointment) {
+        IndexedAppointment indexed = IndexedAppointment.of(appointment);
+        apply(current -> current.put(indexed));
+    }
+
+    public void remove(Integer appointmentId) {
+        apply(current -> current.remove(appointmentId));
+    }
+
+    /**
+     * Indexes the appointment once the current transaction commits, or right
+     * away if there is no transaction.
+     */
+    public void indexAfterCommit(PresenceAppointment appointment) {
+        IndexedAppointment indexed = IndexedAppointment.of(appointment);
+        afterCommit(() -> apply(current -> current.put(indexed)));
+    }
+
+    public void removeAfterCommit(Integer appointmentId) {
+        afterCommit(() -> remove(appointmentId));
+    }
+
+    /**
+     * Returns the ID of an appointment of the subject on the resource that
+     * starts in [from, to) or ends in (from, to], ignoring
+     * {@code excludedAppointmentId}.
+     */
+    public Optional<Integer> findConflict(String subject, Integer resourceId, LocalDateTime from,
+            LocalDateTime to, Integer excludedAppointmentId) {
+        Slot slot = state.slots.get(new SlotKey(subject, resourceId));
+        if (slot == null) {
+            return Optional.empty();
+        }
+
+        long fromSecond = toEpochSecond(from);
+        long toSecond = toEpochSecond(to);
+
+        NavigableSet<Point> starting = slot.starts.subSet(
+                new Point(fromSecond, Integer.MIN_VALUE), true,
+                new Point(toSecond, Integer.MIN_VALUE), false);
+        for (Point point : starting) {
+            if (!point.appointmentId().equals(excludedAppointmentId)) {
+                return Optional.of(point.appointmentId());
+            }
+        }
+
+        NavigableSet<Point> ending = slot.ends.subSet(
+                new Point(fromSecond, Integer.MAX_VALUE), false,
+                new Point(toSecond, Integer.MAX_VALUE), true);
+        for (Point point : ending) {
+            if (!point.appointmentId().equals(excludedAppointmentId)) {
+                return Optional.of(point.appointmentId());
+            }
+        }
+
+        for (IndexedAppointment series : slot.recurring) {
+            if (series.id().equals(excludedAppointmentId) || !series.startTime().isBefore(to)) {
+                continue;
+            }
+            boolean conflicts = recurrenceService.occurrences(series.id(), series.recurrenceRule(),
+                    series.startTime(), series.endTime(), from, to).stream()
+                    .anyMatch(occurrence -> occurrence.startsOrEndsWithin(from, to));
+            if (conflicts) {
+                return Optional.of(series.id());
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Returns every conflicting (resource, appointment) pair for the subject
+     * across all the given resources, ordered by resource.
+     */
+    public List<AppointmentConflict> findConflicts(String subject, Collection<Integer> resourceIds,
+            LocalDateTime from, LocalDateTime to, Integer excludedAppointmentId) {
+        List<AppointmentConflict> conflicts = new ArrayList<>();
+        resourceIds.stream().filter(Objects::nonNull).distinct().sorted().forEach(resourceId ->
+                findConflict(subject, resourceId, from, to, excludedAppointmentId)
+                        .ifPresent(appointmentId -> conflicts.add(new AppointmentConflict(resourceId, appointmentId))));
+        return conflicts;
+    }
+
+    private void apply(Consumer<State> change) {
+        synchronized (writeLock) {
+            change.accept(state);
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static final class State {
+        private final Map<SlotKey, Slot> slots = new ConcurrentHashMap<>();
+        private final Map<Integer, IndexedAppointment> byId = new ConcurrentHashMap<>();
+        private volatile boolean ready;
+
+        private void put(IndexedAppointment appointment) {
+            remove(appointment.id());
+            if (!appointment.indexable()) {
+                return;
+            }
+
+            byId.put(appointment.id(), appointment);
+            for (Integer resourceId : appointment.resourceIds()) {
+                Slot slot = slots.computeIfAbsent(new SlotKey(appointment.subject(), resourceId), key -> new Slot());
+                slot.starts.add(new Point(appointment.start(), appointment.id()));
+                slot.ends.add(new Point(appointment.end(), appointment.id()));
+                if (appointment.recurring()) {
+                    slot.recurring.add(appointment);
+                }
+            }
+        }
+
+        private void remove(Integer appointmentId) {
+            IndexedAppointment previous = byId.remove(appointmentId);
+            if (previous == null) {
+                return;
+            }
+
+            for (Integer resourceId : previous.resourceIds()) {
+                SlotKey key = new SlotKey(previous.subject(), resourceId);
+                Slot slot = slots.get(key);
+                if (slot != null) {
+                    slot.starts.remove(new Point(previous.start(), previous.id()));
+                    slot.ends.remove(new Point(previous.end(), previous.id()));
+                    slot.recurring.remove(previous);
+                    if (slot.starts.isEmpty()) {
+                        slots.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Slot {
+        private final ConcurrentSkipListSet<Point> starts = new ConcurrentSkipListSet<>();
+        private final ConcurrentSkipListSet<Point> ends = new ConcurrentSkipListSet<>();
+        private final Set<IndexedAppointment> recurring = ConcurrentHashMap.newKeySet();
+    }
+
+    private record SlotKey(String subject, Integer resourceId) {
+    }
+
+    private record Point(long epochSecond, Integer appointmentId) implements Comparable<Point> {
+        @Override
+        public int compareTo(Point other) {
+            int byTime = Long.compare(epochSecond, other.epochSecond);
+            return byTime != 0 ? byTime : Integer.compare(appointmentId, other.appointmentId);
+        }
+    }
+
+    /**
+     * Immutable copy of the fields the index needs, so later changes to the
+     * entity cannot corrupt it.
+     */
+    private record IndexedAppointment(Integer id, String subject, LocalDateTime startTime, LocalDateTime endTime,
+            String recurrenceRule, List<Integer> resourceIds, boolean active) {
+
+        static IndexedAppointment of(PresenceAppointment appointment) {
+            return new IndexedAppointment(
+                    appointment.getId(),
+                    appointment.getSubject(),
+                    appointment.getStartTime(),
+                    appointment.getEndTime(),
+                    appointment.getRecurrenceRule(),
+                    appointment.getResourceIds() != null
+                            ? appointment.getResourceIds().stream().filter(Objects::nonNull).distinct().toList()
+                            : List.of(),
+                    Boolean.TRUE.equals(appointment.getActive()));
+        }
+
+        long start() {
+            return toEpochSecond(startTime);
+        }
+
+        long end() {
+            return toEpochSecond(endTime);
+        }
+
+        boolean recurring() {
+            return RecurrenceRule.isRecurring(recurrenceRule);
+        }
+
+        boolean indexable() {
+            return active && id != null && subject != null && !resourceIds.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.AppointmentProperties;
+import com.bluemobility.bmpresence.dto.AppointmentBooking;
+import com.bluemobility.bmpresence.dto.AppointmentImportReport;
+import com.bluemobility.bmpresence.dto.AppointmentImportResult;
+import com.bluemobility.bmpresence.dto.AppointmentOccurrence;
+import com.bluemobility.bmpresence.model.PresenceAppointment;
+import com.bluemobility.bmpresence.repository.PresenceAppointmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Imports many appointments in one request. Rows are processed in batches of
+ * {@code appointments.bulk-import.batch-size}: each batch is checked for
+ * conflicts against the rows already accepted from the same request and
+ * against existing appointments (the conflict index when it is ready,
+ * otherwise set-based queries per batch), then inserted with JDBC batching in its own
+ * transaction. Rows are never rejected as a whole; every row gets its own
+ * result. A batch the database fails to insert is rolled back and its rows
+ * are inserted again one at a time, so only the rows the database rejects
+ * are reported as failed, and the import goes on with the next batch.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AppointmentImportService {
+
+    private static final String INSERT_APPOINTMENT = "INSERT INTO PresenceAppointments "
+            + "(Subject, StartTime, EndTime, RecurrenceRule, RecurrenceEnd, Active, CreatedAt, UpdatedAt, ResourceIds) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_RESOURCE = "INSERT INTO PresenceAppointmentResources "
+            + "(AppointmentId, ResourceId) VALUES (?, ?)";
+
+    private final PresenceAppointmentRepository appointmentRepository;
+    private final AppointmentConflictIndex conflictIndex;
+    private final RecurrenceService recurrenceService;
+    private final AppointmentProperties appointmentProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final CollectionVersions collectionVersions;
+
+    /**
+     * Imports an NDJSON stream of appointments, reading it one row at a time.
+     */
+    public AppointmentImportReport importAppointments(InputStream ndjson) {
+        try (MappingIterator<PresenceAppointment> rows = objectMapper.readerFor(PresenceAppointment.class)
+                .readValues(ndjson)) {
+            return importAppointments(rows);
+        }
+    }
+
+    public AppointmentImportReport importAppointments(Iterator<PresenceAppointment> rows) {
+        AppointmentProperties.BulkImport properties = appointmentProperties.getBulkImport();
+        List<AppointmentImportResult> results = new ArrayList<>();
+        // Conflict days taken by rows already accepted in this request, with their row number
+        Map<BookingKey, Integer> claimed = new HashMap<>();
+        List<Row> batch = new ArrayList<>(properties.getBatchSize());
+
+        int rowNumber = 0;
+        while (true) {
+            rowNumber++;
+            PresenceAppointment appointment;
+            try {
+                if (!rows.hasNext()) {
+                    break;
+                }
+                if (rowNumber > properties.getMaxRows()) {
+                    // Later rows are not read at all
+                    batch.add(new Row(rowNumber, null, String.format(
+                            "Limite di %d righe superato, le righe successive non sono state importate",
+                            properties.getMaxRows())));
+                    break;
+                }
+                appointment = rows.next();
+            } catch (JacksonException e) {
+                // The stream cannot be resumed after a malformed row
+                batch.add(new Row(rowNumber, null, "Riga non valida: " + e.getOriginalMessage()));
+                break;
+            }
+
+            batch.add(new Row(rowNumber, appointment, validate(appointment)));
+            if (batch.size() == properties.getBatchSize()) {
+                results.addAll(importBatch(batch, claimed));
+                batch.clear();
+            }
+        }
+        results.addAll(importBatch(batch, claimed));
+
+        AppointmentImportReport report = AppointmentImportReport.of(results);
+        log.info("Imported {} of {} appointments", report.created(), report.total());
+        return report;
+    }
+
+    private List<AppointmentImportResult> importBatch(List<Row> batch, Map<BookingKey, Integer> claimed) {
+        AppointmentImportResult[] results = new AppointmentImportResult[batch.size()];
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Row row = batch.get(i);
+            if (row.error() != null) {
+                results[i] = AppointmentImportResult.invalid(row.number(), row.error());
+            } else {
+                candidates.add(new Candidate(i, row, recurrenceService.bookedOccurrences(row.appointment())));
+            }
+        }
+
+        // Existing appointments come from the index when it is ready, else from one query for the batch
+        Map<BookingKey, Integer> existing = conflictIndex.isReady() ? null : findExistingBookings(candidates);
+        List<Candidate> accepted = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            String conflict = findConflict(candidate, existing, claimed);
+            if (conflict != null) {
+                results[candidate.position()] = AppointmentImportResult.conflict(candidate.row().number(), conflict);
+            } else {
+                accepted.add(candidate);
+                candidate.conflictKeys().forEach(key -> claimed.putIfAbsent(key, candidate.row().number()));
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(accepted));
+                accepted.forEach(candidate -> results[candidate.position()] = created(candidate));
+            } catch (DataAccessException e) {
+                // The batch was rolled back; retried row by row so only the rows the database rejects fail
+                log.warn("Error importing appointment rows {}-{}, retrying them one at a time: {}",
+                        batch.get(0).number(), batch.get(batch.size() - 1).number(), e.getMessage());
+                insertOneByOne(accepted, results, claimed);
+            } catch (TransactionException e) {
+                // No transaction could be run, so every row would fail the same way; later batches are still tried
+                log.warn("Error importing appointment rows {}-{}: {}", batch.get(0).number(),
+                        batch.get(batch.size() - 1).number(), e.getMessage());
+                accepted.forEach(candidate -> results[candidate.position()] = failed(candidate, claimed));
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private void insertOneByOne(List<Candidate> accepted, AppointmentImportResult[] results,
+            Map<BookingKey, Integer> claimed) {
+        for (int i = 0; i < accepted.size(); i++) {
+            Candidate candidate = accepted.get(i);
+            candidate.row().appointment().setId(null);
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(List.of(candidate)));
+                results[candidate.position()] = created(candidate);
+            } catch (DataAccessException e) {
+                log.warn("Error importing appointment row {}: {}", candidate.row().number(), e.getMessage());
+                results[candidate.position()] = failed(candidate, claimed);
+            } catch (TransactionException e) {
+                log.warn("Error importing appointment rows {}-{}: {}", candidate.row().number(),
+                        accepted.get(accepted.size() - 1).row().number(), e.getMessage());
+                accepted.subList(i, accepted.size())
+                        .forEach(remaining -> results[remaining.position()] = failed(remaining, claimed));
+                return;
+            }
+        }
+    }
+
+    private static AppointmentImportResult created(Candidate candidate) {
+        return AppointmentImportResult.created(candidate.row().number(), candidate.row().appointment().getId());
+    }
+
+    /**
+     * Reports the row as not imported and releases the days it claimed, so
+     * later rows of the request may book them.
+     */
+    private static AppointmentImportResult failed(Candidate candidate, Map<BookingKey, Integer> claimed) {
+        candidate.row().appointment().setId(null);
+        candidate.conflictKeys().forEach(key -> claimed.remove(key, candidate.row().number()));
+        return AppointmentImportResult.failed(candidate.row().number(),
+                "Errore durante il salvataggio, la riga non è stata importata");
+    }
+
+    /**
+     * Loads the bookings that may conflict with any row of the batch, keyed by
+     * the days on which they conflict. Two queries cover the whole batch.
+     */
+    private Map<BookingKey, Integer> findExistingBookings(List<Candidate> candidates) {
+        Set<String> subjects = new HashSet<>();
+        Set<Integer> resourceIds = new HashSet<>();
+        LocalDate firstDay = null;
+        LocalDate lastDay = null;
+        for (Candidate candidate : candidates) {
+            if (!candidate.checked()) {
+                continue;
+            }
+            subjects.add(candidate.row().appointment().getSubject());
+            resourceIds.addAll(candidate.resourceIds());
+            for (LocalDate day : candidate.bookedDays()) {
+                firstDay = firstDay == null || day.isBefore(firstDay) ? day : firstDay;
+                lastDay = lastDay == null || day.isAfter(lastDay) ? day : lastDay;
+            }
+        }
+
+        Map<BookingKey, Integer> existing = new HashMap<>();
+        if (subjects.isEmpty()) {
+            return existing;
+        }
+
+        LocalDateTime from = firstDay.atStartOfDay();
+        LocalDateTime to = lastDay.plusDays(1).atStartOfDay();
+        List<AppointmentBooking> bookings = new ArrayList<>(appointmentRepository.findBookings(subjects, resourceIds,
+                from, to));
+        bookings.addAll(appointmentRepository.findRecurringBookings(subjects, resourceIds, from, to));
+        for (AppointmentBooking booking : bookings) {
+            recurrenceService.stream(booking.recurrenceRule(), booking.startTime(), booking.endTime(), from, to)
+                    .flatMap(occurrence -> occurrence.conflictDays().stream())
+                    .forEach(day -> existing.putIfAbsent(
+                            new BookingKey(booking.subject(), booking.resourceId(), day), booking.appointmentId()));
+        }
+        return existing;
+    }
+
+    private String findConflict(Candidate candidate, Map<BookingKey, Integer> existing,
+            Map<BookingKey, Integer> claimed) {
+        if (!candidate.checked()) {
+            return null;
+        }
+
+        String subject = candidate.row().appointment().getSubject();
+        for (Integer resourceId : candidate.resourceIds().stream().sorted().toList()) {
+            for (LocalDate day : candidate.bookedDays()) {
+                BookingKey key = new BookingKey(subject, resourceId, day);
+                Integer existingId = existing != null
+                        ? existing.get(key)
+                        : conflictIndex.findConflict(subject, resourceId, day.atStartOfDay(),
+                                day.plusDays(1).atStartOfDay(), null).orElse(null);
+                if (existingId != null) {
+                    return String.format("La persona '%s' ha già un appuntamento assegnato per la risorsa %d il giorno %s",
+                            subject, resourceId, day);
+                }
+                Integer claimingRow = claimed.get(key);
+                if (claimingRow != null) {
+                    return String.format(
+                            "La persona '%s' ha già un appuntamento assegnato per la risorsa %d il giorno %s (riga %d)",
+                            subject, resourceId, day, claimingRow);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void insert(List<Candidate> accepted) {
+        LocalDateTime now = LocalDateTime.now();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_APPOINTMENT, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        PresenceAppointment appointment = accepted.get(i).row().appointment();
+                        ps.setString(1, appointment.getSubject());
+                        ps.setObject(2, appointment.getStartTime());
+                        ps.setObject(3, appointment.getEndTime());
+                        ps.setString(4, appointment.getRecurrenceRule());
+                        ps.setObject(5, recurrenceService.seriesEnd(appointment));
+                        ps.setBoolean(6, !Boolean.FALSE.equals(appointment.getActive()));
+                        ps.setObject(7, now);
+                        ps.setObject(8, now);
+                        ps.setString(9, appointment.getResourceIds() != null
+                                ? objectMapper.writeValueAsString(appointment.getResourceIds())
+                                : null);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return accepted.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Object[]> memberships = new ArrayList<>();
+        for (int i = 0; i < accepted.size(); i++) {
+            PresenceAppointment appointment = accepted.get(i).row().appointment();
+            appointment.setId(((Number) keys.get(i).values().iterator().next()).intValue());
+            appointment.setActive(!Boolean.FALSE.equals(appointment.getActive()));
+            appointment.setCreatedAt(now);
+            appointment.setUpdatedAt(now);
+            accepted.get(i).resourceIds().forEach(resourceId ->
+                    memberships.add(new Object[] { appointment.getId(), resourceId }));
+            conflictIndex.indexAfterCommit(appointment);
+        }
+        jdbcTemplate.batchUpdate(INSERT_RESOURCE, memberships);
+        collectionVersions.bump(CollectionVersions.Kind.APPOINTMENTS);
+    }
+
+    private String validate(PresenceAppointment appointment) {
+        if (appointment == null) {
+            return "Riga vuota";
+        }
+        if (appointment.getStartTime() == null || appointment.getEndTime() == null) {
+            return "Data di inizio e data di fine obbligatorie";
+        }
+        if (!appointment.getStartTime().isBefore(appointment.getEndTime())) {
+            return "La data di inizio deve precedere la data di fine";
+        }
+        try {
+            recurrenceService.validate(appointment.getRecurrenceRule());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        if (appointment.getEndTime().isAfter(
+                appointment.getStartTime().plus(appointmentProperties.getMaxDuration()))) {
+            return String.format("Un appuntamento non può durare più di %d giorni",
+                    appointmentProperties.getMaxDuration().toDays());
+        }
+        return null;
+    }
+
+    private record Row(int number, PresenceAppointment appointment, String error) {
+    }
+
+    private record BookingKey(String subject, Integer resourceId, LocalDate day) {
+    }
+
+    private record Candidate(int position, Row row, List<AppointmentOccurrence> occurrences) {
+
+        Set<Integer> resourceIds() {
+            List<Integer> resourceIds = row.appointment().getResourceIds();
+            Set<Integer> distinct = new HashSet<>();
+            if (resourceIds != null) {
+                resourceIds.stream().filter(Objects::nonNull).forEach(distinct::add);
+            }
+            return distinct;
+        }
+
+        /**
+         * Rows without subject or resources are not checked for conflicts,
+         * like single creates.
+         */
+        boolean checked() {
+            return row.appointment().getSubject() != null && !resourceIds().isEmpty();
+        }
+
+        List<LocalDate> bookedDays() {
+            return occurrences.stream().map(occurrence -> occurrence.startTime().toLocalDate()).distinct().toList();
+        }
+
+        List<BookingKey> conflictKeys() {
+            if (!checked()) {
+                return List.of();
+            }
+            List<BookingKey> keys = new ArrayList<>();
+            for (Integer resourceId : resourceIds()) {
+                occurrences.stream()
+                        .flatMap(occurrence -> occurrence.conflictDays().stream())
+                        .distinct()
+                        .forEach(day -> keys.add(new BookingKey(row.appointment().getSubject(), resourceId, day)));
+            }
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.AuthProperties;
+import com.bluemobility.bmpresence.exception.RateLimitExceededException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-client rate limiter for the public authentication endpoints, checked
+ * before any password hashing, token signing or database access.
+ *
+ * <p>Each (endpoint, IP) and (endpoint, username) key is a token bucket
+ * implemented as GCRA: the only state is the theoretical arrival time of the
+ * next request in an {@link AtomicLong}, updated with a CAS loop, so checks
+ * never lock. Keys live in a bounded Caffeine cache and are dropped after
+ * {@code auth.rate-limit.idle-timeout} without requests; a dropped key simply
+ * starts again with a full bucket.
+ */
+@Service
+public class AuthRateLimiter {
+
+    private final AuthProperties.RateLimit settings;
+    private final Cache<String, AtomicLong> buckets;
+    private final MeterRegistry meterRegistry;
+    private final Ticker ticker;
+
+    @Autowired
+    public AuthRateLimiter(AuthProperties authProperties, MeterRegistry meterRegistry) {
+        this(authProperties, meterRegistry, Ticker.systemTicker());
+    }
+
+    /**
+     * Reads the time from {@code ticker}, for both the buckets and their idle
+     * timeout, so tests can move it by hand.
+     */
+    AuthRateLimiter(AuthProperties authProperties, MeterRegistry meterRegistry, Ticker ticker) {
+        this.settings = authProperties.getRateLimit();
+        this.meterRegistry = meterRegistry;
+        this.ticker = ticker;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(settings.getMaxKeys())
+                .expireAfterAccess(settings.getIdleTimeout())
+                .ticker(ticker)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "auth.rate-limit.keys");
+    }
+
+    /**
+     * Counts a request to the endpoint from the IP and, if given, for the
+     * username.
+     *
+     * @throws RateLimitExceededException if either limit is exhausted
+     */
+    public void check(String endpoint, AuthProperties.Endpoint limits, String clientIp, String username) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        acquire(endpoint, "ip", clientIp, limits.getPerIp());
+        if (username != null && !username.isBlank()) {
+            acquire(endpoint, "username", username.trim().toLowerCase(Locale.ROOT), limits.getPerUsername());
+        }
+    }
+
+    private void acquire(String endpoint, String keyType, String key, AuthProperties.Limit limit) {
+        if (limit == null || limit.getCapacity() <= 0 || key == null) {
+            return;
+        }
+
+        long retryAfterNanos = tryAcquire(endpoint + ":" + keyType + ":" + key, limit);
+        if (retryAfterNanos > 0) {
+            counter(endpoint, keyType, "rejected").increment();
+            throw new RateLimitExceededException("Troppe richieste. Riprovare tra poco",
+                    Duration.ofNanos(retryAfterNanos));
+        }
+        counter(endpoint, keyType, "allowed").increment();
+    }
+
+    /**
+     * Returns 0 if the request is allowed, otherwise the time until it would
+     * be.
+     */
+    private long tryAcquire(String key, AuthProperties.Limit limit) {
+        long period = limit.getPeriod().toNanos();
+        long interval = Math.max(1, period / limit.getCapacity());
+        long tolerance = period - interval;
+
+        AtomicLong nextArrival = buckets.get(key, k -> new AtomicLong(Long.MIN_VALUE));
+        long now = ticker.read();
+        while (true) {
+            long current = nextArrival.get();
+            long start = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long wait = start - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (nextArrival.compareAndSet(current, start + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    private Counter counter(String endpoint, String keyType, String outcome) {
+        return Counter.builder("auth.rate-limit.requests")
+                .description("Requests checked by the authentication rate limiter")
+                .tag("endpoint", endpoint)
+                .tag("key", keyType)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -1,96 +1,154 @@
 package com.bluemobility.bmpresence.service;
 
 import com.bluemobility.bmpresence.dto.UserDTO;
+import com.bluemobility.bmpresence.dto.UserPrincipal;
 import com.bluemobility.bmpresence.model.User;
 import com.bluemobility.bmpresence.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.time.LocalDateTime;
-import java.util.Base64;
+import java.util.Objects;
 
 @Service
+@Timed("service.invocations")
 @RequiredArgsConstructor
 @Slf4j
 public class AuthenticationService {
 
     private final UserRepository userRepository;
     private final TokenService tokenService;
-
-    private User currentUser;
-
+    private final UserPrincipalCache userPrincipalCache;
+    private final PresenceBuffer presenceBuffer;
+    private final CollectionVersions collectionVersions;
+    private final PasswordHasher passwordHasher;
+    private final TokenRevocationService tokenRevocationService;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Returns the user of the current request, as authenticated by the JWT
+     * filter, or {@code null} if the request is anonymous.
+     */
     public User getCurrentUser() {
-        return currentUser;
+        UserPrincipal principal = getCurrentPrincipal();
+        if (principal == null) {
+            return null;
+        }
+        return userRepository.findById(principal.id()).orElse(null);
     }
 
     public boolean isAuthenticated() {
-        return currentUser != null;
+        return getCurrentPrincipal() != null;
     }
 
-    @Transactional
+    private UserPrincipal getCurrentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal;
+        }
+        return null;
+    }
+
+    /**
+     * Changes the caller's password. The stored hash is read and written in
+     * two short transactions, and the hashing in between holds no database
+     * connection.
+     */
     public boolean changePassword(String currentPassword, String newPassword) {
+        User currentUser;
         try {
-            if (currentUser == null) {
-                return false;
-            }
-
-            boolean isCurrentPasswordValid = verifyPassword(
-                    currentPassword,
-                    currentUser.getHashedPassword(),
-                    currentUser.getSalt());
-
-            if (!isCurrentPasswordValid) {
-                log.warn("Password change failed: Invalid current password for user {}",
-                        currentUser.getUsername());
-                return false;
-            }
+            currentUser = transactionTemplate.execute(status -> getCurrentUser());
+        } catch (Exception e) {
+            log.error("Error during password change", e);
+            return false;
+        }
+        if (currentUser == null) {
+            return false;
+        }
 
-            String newSalt = generateSalt();
-            String newHashedPassword = hashPassword(newPassword, newSalt);
+        boolean isCurrentPasswordValid = passwordHasher.verify(
+                currentPassword,
+                currentUser.getHashedPassword(),
+                currentUser.getSalt());
 
-            currentUser.setSalt(newSalt);
-            currentUser.setHashedPassword(newHashedPassword);
-            currentUser.setMustChangePassword(false);
+        if (!isCurrentPasswordValid) {
+            log.warn("Password change failed: Invalid current password for user {}",
+                    currentUser.getUsername());
+            return false;
+        }
 
-            userRepository.save(currentUser);
+        String newSalt = passwordHasher.generateSalt();
+        String newHashedPassword = passwordHasher.hash(newPassword, newSalt);
 
-            log.info("Password changed successfully for user: {}", currentUser.getUsername());
-            return true;
+        try {
+            Boolean changed = transactionTemplate.execute(status -> {
+                User user = userRepository.findById(currentUser.getId()).orElse(null);
+                if (user == null) {
+                    return false;
+                }
+                user.setSalt(newSalt);
+                user.setHashedPassword(newHashedPassword);
+                user.setMustChangePassword(false);
+
+                collectionVersions.bump(CollectionVersions.Kind.USERS);
+                userRepository.save(user);
+                return true;
+            });
+            if (Boolean.TRUE.equals(changed)) {
+                log.info("Password changed successfully for user: {}", currentUser.getUsername());
+                return true;
+            }
+            return false;
         } catch (Exception e) {
-            log.error("Error during password change for user: {}",
-                    currentUser != null ? currentUser.getUsername() : "unknown", e);
+            log.error("Error during password change for user: {}", currentUser.getUsername(), e);
             return false;
         }
     }
 
-    @Transactional
     public AuthenticationResponse adminResetPassword(Integer userId, String newPassword,
             Boolean forceChangeOnNextLogin) {
-        try {
-            if (currentUser == null || !currentUser.getIsAdmin()) {
-                log.warn("Password reset attempt without admin permissions");
-                return new AuthenticationResponse(
-                        false,
-                        "Accesso negato. Solo gli amministratori possono resettare le password",
-                        null,
-                        null);
-            }
+        UserPrincipal currentPrincipal = getCurrentPrincipal();
+        if (currentPrincipal == null || !currentPrincipal.isAdministrator()) {
+            log.warn("Password reset attempt without admin permissions");
+            return new AuthenticationResponse(
+                    false,
+                    "Accesso negato. Solo gli amministratori possono resettare le password",
+                    null,
+                    null);
+        }
 
-            if (newPassword == null || newPassword.trim().isEmpty()) {
-                return new AuthenticationResponse(
-                        false,
-                        "La nuova password non può essere vuota",
-                        null,
-                        null);
-            }
+        if (newPassword == null || newPassword.trim().isEmpty()) {
+            return new AuthenticationResponse(
+                    false,
+                    "La nuova password non può essere vuota",
+                    null,
+                    null);
+        }
 
-            User userToReset = userRepository.findById(userId).orElse(null);
+        // Hashed before any transaction starts, so the wait holds no connection
+        String newSalt = passwordHasher.generateSalt();
+        String newHashedPassword = passwordHasher.hash(newPassword, newSalt);
+
+        try {
+            User userToReset = transactionTemplate.execute(status -> {
+                User user = userRepository.findById(userId).orElse(null);
+                if (user == null) {
+                    return null;
+                }
+                user.setSalt(newSalt);
+                user.setHashedPassword(newHashedPassword);
+                user.setMustChangePassword(forceChangeOnNextLogin != null ? forceChangeOnNextLogin : true);
+
+                userPrincipalCache.invalidate(userId);
+                collectionVersions.bump(CollectionVersions.Kind.USERS);
+                return userRepository.save(user);
+            });
             if (userToReset == null) {
                 log.warn("Reset attempt for user ID {} not found", userId);
                 return new AuthenticationResponse(
@@ -100,17 +158,8 @@ public class AuthenticationService {
                         null);
             }
 
-            String newSalt = generateSalt();
-            String newHashedPassword = hashPassword(newPassword, newSalt);
-
-            userToReset.setSalt(newSalt);
-            userToReset.setHashedPassword(newHashedPassword);
-            userToReset.setMustChangePassword(forceChangeOnNextLogin != null ? forceChangeOnNextLogin : true);
-
-            userRepository.save(userToReset);
-
             log.info("Admin {} reset password for user: {}",
-                    currentUser.getUsername(), userToReset.getUsername());
+                    currentPrincipal.username(), userToReset.getUsername());
 
             return new AuthenticationResponse(
                     true,
@@ -127,125 +176,149 @@ public class AuthenticationService {
         }
     }
 
-    @Transactional
+    /**
+     * Logs the user in. The user is read in a short transaction and the
+     * password verified after it has ended, so logins queued for the hashing
+     * pool hold no database connection.
+     */
     public AuthenticationResponse login(String username, String password) {
+        if (username == null || username.trim().isEmpty() ||
+                password == null || password.isEmpty()) {
+            return new AuthenticationResponse(
+                    false,
+                    "Il nome utente e la password sono obbligatori",
+                    null,
+                    null);
+        }
+
+        User user;
         try {
-            if (username == null || username.trim().isEmpty() ||
-                    password == null || password.isEmpty()) {
-                return new AuthenticationResponse(
-                        false,
-                        "Il nome utente e la password sono obbligatori",
-                        null,
-                        null);
-            }
+            user = transactionTemplate.execute(status -> userRepository.findByUsername(username).orElse(null));
+        } catch (Exception e) {
+            log.error("Error during login for user: {}", username, e);
+            return new AuthenticationResponse(
+                    false,
+                    "Errore durante l'accesso. Si prega di riprovare.",
+                    null,
+                    null);
+        }
 
-            User user = userRepository.findByUsername(username).orElse(null);
+        if (user == null) {
+            log.warn("Failed login attempt: User not found - {}", username);
+            return new AuthenticationResponse(
+                    false,
+                    "Nome utente o password non corretti",
+                    null,
+                    null);
+        }
 
-            if (user == null) {
-                log.warn("Failed login attempt: User not found - {}", username);
-                return new AuthenticationResponse(
-                        false,
-                        "Nome utente o password non corretti",
-                        null,
-                        null);
-            }
+        if (!user.getActive()) {
+            log.warn("Failed login attempt: Inactive user - {}", username);
+            return new AuthenticationResponse(
+                    false,
+                    "L'account utente è disattivato",
+                    null,
+                    null);
+        }
 
-            if (!user.getActive()) {
-                log.warn("Failed login attempt: Inactive user - {}", username);
-                return new AuthenticationResponse(
-                        false,
-                        "L'account utente è disattivato",
-                        null,
-                        null);
-            }
+        boolean isPasswordValid = passwordHasher.verify(
+                password,
+                user.getHashedPassword(),
+                user.getSalt());
 
-            boolean isPasswordValid = verifyPassword(
-                    password,
-                    user.getHashedPassword(),
-                    user.getSalt());
+        if (!isPasswordValid) {
+            log.warn("Failed login attempt: Invalid password - {}", username);
+            return new AuthenticationResponse(
+                    false,
+                    "Nome utente o password non corretti",
+                    null,
+                    null);
+        }
 
-            if (!isPasswordValid) {
-                log.warn("Failed login attempt: Invalid password - {}", username);
-                return new AuthenticationResponse(
-                        false,
-                        "Nome utente o password non corretti",
-                        null,
-                        null);
-            }
+        if (passwordHasher.needsUpgrade(user.getHashedPassword())) {
+            upgradePasswordHash(user, password);
+        }
 
-            updateLastActive(user);
+        updateLastActive(user);
 
-            currentUser = user;
+        String token = tokenService.generateToken(user.getId());
 
-            String token = tokenService.generateToken(user.getId());
+        log.info("User logged in successfully: {}", username);
 
-            log.info("User logged in successfully: {}", username);
+        String message = "Login effettuato con successo";
+        if (user.getMustChangePassword() != null && user.getMustChangePassword()) {
+            message = "Login effettuato. È necessario cambiare la password";
+        }
 
-            String message = "Login effettuato con successo";
-            if (user.getMustChangePassword() != null && user.getMustChangePassword()) {
-                message = "Login effettuato. È necessario cambiare la password";
-            }
+        return new AuthenticationResponse(
+                true,
+                message,
+                presenceBuffer.overlay(UserDTO.fromUser(user)),
+                token);
+    }
 
-            return new AuthenticationResponse(
-                    true,
-                    message,
-                    UserDTO.fromUser(user),
-                    token);
-        } catch (Exception e) {
-            log.error("Error during login for user: {}", username, e);
-            return new AuthenticationResponse(
-                    false,
-                    "Errore durante l'accesso. Si prega di riprovare.",
-                    null,
-                    null);
+    /**
+     * Revokes the token the request was authenticated with and marks the user
+     * offline.
+     */
+    public void logout(String token) {
+        TokenService.VerifiedToken verifiedToken = tokenService.verify(token);
+        if (verifiedToken != null) {
+            tokenRevocationService.revoke(verifiedToken);
         }
-    }
 
-    public void logout() {
-        if (currentUser != null) {
-            log.info("User logged out: {}", currentUser.getUsername());
-            currentUser = null;
+        UserPrincipal currentPrincipal = getCurrentPrincipal();
+        if (currentPrincipal != null) {
+            presenceBuffer.markOnline(currentPrincipal.id(), false);
+            log.info("User logged out: {}", currentPrincipal.username());
         }
     }
 
+    /**
+     * Validates the token and returns its active user, or {@code null} if the
+     * session cannot be restored.
+     */
     @Transactional
-    public boolean restoreSession(String token) {
+    public User restoreSession(String token) {
         try {
-            boolean isTokenValid = tokenService.isTokenValid(token);
-            if (!isTokenValid) {
+            TokenService.VerifiedToken verifiedToken = tokenService.verify(token);
+            if (verifiedToken == null) {
                 log.info("No valid token found or token has expired");
-                return false;
+                return null;
             }
 
-            Integer userId = tokenService.getUserIdFromToken(token);
+            Integer userId = verifiedToken.userId();
             if (userId == null) {
                 log.warn("Token found but no user ID found");
-                return false;
+                return null;
             }
 
             User user = userRepository.findById(userId).orElse(null);
             if (user == null) {
                 log.warn("User ID {} not found in database", userId);
-                return false;
+                return null;
             }
 
             if (!user.getActive()) {
                 log.warn("User {} is inactive", user.getUsername());
-                return false;
+                return null;
             }
 
-            currentUser = user;
             updateLastActive(user);
 
             log.info("Session restored successfully for user: {}", user.getUsername());
-            return true;
+            return user;
         } catch (Exception e) {
             log.error("Error restoring session", e);
-            return false;
+            return null;
         }
     }
 
-    @Transactional
+    /**
+     * Registers a user. Uniqueness is checked before hashing and again in the
+     * short transaction that inserts the user, since another registration may
+     * have taken the name while the password was being hashed.
+     */
     public AuthenticationResponse registerUser(
             String name,
             String lastName,
@@ -253,45 +326,38 @@ public class AuthenticationService {
             String username,
             String password,
             Boolean isAdmin) {
-        try {
-            if (username == null || username.trim().isEmpty() ||
-                    password == null || password.isEmpty()) {
-                return new AuthenticationResponse(
-                        false,
-                        "Il nome utente e la password sono obbligatori",
-                        null,
-                        null);
-            }
-
-            if (email == null || email.trim().isEmpty()) {
-                return new AuthenticationResponse(
-                        false,
-                        "L'email è obbligatoria",
-                        null,
-                        null);
-            }
+        if (username == null || username.trim().isEmpty() ||
+                password == null || password.isEmpty()) {
+            return new AuthenticationResponse(
+                    false,
+                    "Il nome utente e la password sono obbligatori",
+                    null,
+                    null);
+        }
 
-            // Check if user already exists
-            if (userRepository.findByUsername(username).isPresent()) {
-                return new AuthenticationResponse(
-                        false,
-                        "Il nome utente è già in uso",
-                        null,
-                        null);
-            }
+        if (email == null || email.trim().isEmpty()) {
+            return new AuthenticationResponse(
+                    false,
+                    "L'email è obbligatoria",
+                    null,
+                    null);
+        }
 
-            if (userRepository.findByEmail(email).isPresent()) {
-                return new AuthenticationResponse(
-                        false,
-                        "L'email è già registrata",
-                        null,
-                        null);
+        try {
+            String duplicate = transactionTemplate.execute(status -> findDuplicate(username, email));
+            if (duplicate != null) {
+                return new AuthenticationResponse(false, duplicate, null, null);
             }
+        } catch (Exception e) {
+            log.error("Error during user registration: {}", username, e);
+            return registrationError();
+        }
 
-            // Generate salt and hash the password
-            String salt = generateSalt();
-            String hashedPassword = hashPassword(password, salt);
+        // Generate salt and hash the password
+        String salt = passwordHasher.generateSalt();
+        String hashedPassword = passwordHasher.hash(password, salt);
 
+        try {
             User newUser = new User();
             newUser.setName(name);
             newUser.setLastName(lastName);
@@ -305,73 +371,73 @@ public class AuthenticationService {
             newUser.setCreatedAt(LocalDateTime.now());
             newUser.setLastUpdated(LocalDateTime.now());
 
-            User savedUser = userRepository.save(newUser);
-
-            log.info("New user registered: {}", username);
+            AuthenticationResponse response = transactionTemplate.execute(status -> {
+                String duplicate = findDuplicate(username, email);
+                if (duplicate != null) {
+                    return new AuthenticationResponse(false, duplicate, null, null);
+                }
+                collectionVersions.bump(CollectionVersions.Kind.USERS);
+                User savedUser = userRepository.save(newUser);
+                return new AuthenticationResponse(
+                        true,
+                        "Utente registrato con successo",
+                        UserDTO.fromUser(savedUser),
+                        null);
+            });
 
-            return new AuthenticationResponse(
-                    true,
-                    "Utente registrato con successo",
-                    UserDTO.fromUser(savedUser),
-                    null);
+            if (response.isSuccess()) {
+                log.info("New user registered: {}", username);
+            }
+            return response;
         } catch (Exception e) {
             log.error("Error during user registration: {}", username, e);
-            return new AuthenticationResponse(
-                    false,
-                    "Errore durante la registrazione dell'utente. Si prega di riprovare.",
-                    null,
-                    null);
+            return registrationError();
         }
     }
 
-    private String generateSalt() {
-        byte[] saltBytes = new byte[32];
-        SecureRandom random = new SecureRandom();
-        random.nextBytes(saltBytes);
-        return Base64.getEncoder().encodeToString(saltBytes);
+    private String findDuplicate(String username, String email) {
+        if (userRepository.findByUsername(username).isPresent()) {
+            return "Il nome utente è già in uso";
+        }
+        if (userRepository.findByEmail(email).isPresent()) {
+            return "L'email è già registrata";
+        }
+        return null;
     }
 
-    private String hashPassword(String password, String salt) {
-        try {
-            if (salt == null || salt.isEmpty()) {
-                salt = generateSalt();
-            }
-
-            byte[] saltBytes = Base64.getDecoder().decode(salt);
-            byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
-            byte[] saltedPassword = new byte[saltBytes.length + passwordBytes.length];
-
-            System.arraycopy(saltBytes, 0, saltedPassword, 0, saltBytes.length);
-            System.arraycopy(passwordBytes, 0, saltedPassword, saltBytes.length, passwordBytes.length);
-
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(saltedPassword);
-
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (NoSuchAlgorithmException e) {
-            log.error("Error hashing password", e);
-            throw new RuntimeException("Error hashing password", e);
-        }
+    private static AuthenticationResponse registrationError() {
+        return new AuthenticationResponse(
+                false,
+                "Errore durante la registrazione dell'utente. Si prega di riprovare.",
+                null,
+                null);
     }
 
-    @Transactional
-    private void updateLastActive(User user) {
+    /**
+     * Re-hashes a legacy or weaker stored hash now that the password is
+     * known, unless the password changed meanwhile. A failure, including a
+     * full hashing pool, only means the upgrade is retried on the next login.
+     */
+    private void upgradePasswordHash(User user, String password) {
         try {
-            user.setLastActiveAt(LocalDateTime.now());
-            user.setIsOnline(true);
-            userRepository.save(user);
+            String newSalt = passwordHasher.generateSalt();
+            String newHashedPassword = passwordHasher.hash(password, newSalt);
+            transactionTemplate.executeWithoutResult(status -> userRepository.findById(user.getId())
+                    .filter(current -> Objects.equals(current.getHashedPassword(), user.getHashedPassword()))
+                    .ifPresent(current -> {
+                        current.setSalt(newSalt);
+                        current.setHashedPassword(newHashedPassword);
+                        userRepository.save(current);
+                        log.info("Password hash upgraded for user: {}", user.getUsername());
+                    }));
         } catch (Exception e) {
-            log.error("Error updating last active for user: {}", user.getUsername(), e);
+            log.error("Error upgrading password hash for user: {}", user.getUsername(), e);
         }
     }
 
-    private boolean verifyPassword(String password, String storedHash, String salt) {
-        if (storedHash == null || storedHash.isEmpty() || salt == null || salt.isEmpty()) {
-            return false;
-        }
-
-        String computedHash = hashPassword(password, salt);
-        return computedHash.equals(storedHash);
+    private void updateLastActive(User user) {
+        // Written to the database by the next presence buffer flush
+        presenceBuffer.markActive(user.getId());
     }
 
     // Inner class for authentication response
@@ -0,0 +1,222 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.model.CollectionVersion;
+import com.bluemobility.bmpresence.repository.CollectionVersionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the user, resource and appointment collections, used as strong
+ * ETags of the list endpoints. Every write to a collection must call
+ * {@link #bump}; a list response is only answered with 304 while the version
+ * the client holds is still current.
+ *
+ * <p>Versions are shared through the {@code CollectionVersions} table and
+ * held in memory, so reading one never touches the database. Once a write has
+ * committed, its increment is written by a background thread in a short
+ * transaction of its own, so neither the write nor its pool connection wait
+ * for the shared row; increments queued meanwhile are written together.
+ * Other instances pick the new version up on their next sync, every
+ * {@code presence.versions.sync-interval}. Until the increment is written,
+ * the ETags of this instance carry a local suffix, so its clients never get
+ * a 304 for a list that misses their write.
+ */
+@Service
+@Slf4j
+public class CollectionVersions {
+
+    public enum Kind {
+        USERS, RESOURCES, APPOINTMENTS
+    }
+
+    private final CollectionVersionRepository collectionVersionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Kind, Version> versions = new EnumMap<>(Kind.class);
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("collection-versions").daemon().factory());
+
+    public CollectionVersions(CollectionVersionRepository collectionVersionRepository,
+            TransactionTemplate transactionTemplate) {
+        this.collectionVersionRepository = collectionVersionRepository;
+        this.transactionTemplate = transactionTemplate;
+        for (Kind kind : Kind.values()) {
+            versions.put(kind, new Version());
+        }
+    }
+
+    /**
+     * Returns the latest written version of the collection known to this
+     * instance.
+     */
+    public long version(Kind kind) {
+        return versions.get(kind).written.get();
+    }
+
+    /**
+     * Returns the quoted ETag of the current version of the collection. Read
+     * it before loading the collection, so a concurrent write can only make
+     * the ETag older than the body, never newer.
+     */
+    public String etag(Kind kind) {
+        Version version = versions.get(kind);
+        // Unwritten count first: the written version is advanced before it drops
+        boolean unwritten = version.unwritten.get() > 0;
+        long local = version.local.get();
+        String etag = kind.name().toLowerCase(Locale.ROOT) + "-" + version.written.get();
+        if (unwritten) {
+            etag += "-" + epoch + "-" + local;
+        }
+        return "\"" + etag + "\"";
+    }
+
+    /**
+     * Counts a write to the collection once the current transaction has
+     * committed, or now without a transaction, and queues the increment of
+     * the shared version.
+     */
+    public void bump(Kind kind) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            committed(kind);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<Kind> pending = (Set<Kind>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<Kind> kinds = EnumSet.noneOf(Kind.class);
+            TransactionSynchronizationManager.bindResource(this, kinds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    kinds.forEach(CollectionVersions.this::committed);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CollectionVersions.this);
+                }
+            });
+            pending = kinds;
+        }
+        pending.add(kind);
+    }
+
+    /**
+     * Retries increments that could not be written, and loads the versions
+     * written by other instances.
+     */
+    @Scheduled(fixedDelayString = "${presence.versions.sync-interval:5s}")
+    public void sync() {
+        for (Kind kind : Kind.values()) {
+            if (versions.get(kind).unwritten.get() > 0) {
+                writer.execute(() -> write(kind));
+            }
+        }
+        try {
+            List<CollectionVersion> rows = transactionTemplate.execute(
+                    status -> collectionVersionRepository.findAll());
+            for (CollectionVersion row : rows) {
+                versions.get(Kind.valueOf(row.getKind())).advance(row.getVersion());
+            }
+        } catch (Exception e) {
+            log.warn("Error syncing collection versions: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the rows missing from schemas created without the db/changes
+     * script, such as the entity-generated schema of the tests, and loads the
+     * current versions.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Kind kind : Kind.values()) {
+                    if (!collectionVersionRepository.existsById(kind.name())) {
+                        collectionVersionRepository.save(new CollectionVersion(kind.name(), 0L));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            // Another instance may have added them at the same time
+            log.warn("Error adding collection versions: {}", e.getMessage());
+        }
+        sync();
+    }
+
+    @PreDestroy
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void committed(Kind kind) {
+        Version version = versions.get(kind);
+        version.local.incrementAndGet();
+        version.unwritten.incrementAndGet();
+        writer.execute(() -> write(kind));
+    }
+
+    /**
+     * Writes one increment for every write counted so far. Runs on the
+     * writer thread only.
+     */
+    private void write(Kind kind) {
+        Version version = versions.get(kind);
+        long writes = version.unwritten.get();
+        if (writes == 0) {
+            return;
+        }
+        try {
+            Long written = transactionTemplate.execute(status -> {
+                if (collectionVersionRepository.increment(kind.name()) == 0) {
+                    log.warn("Collection version {} missing, apply db/changes/005-collection-versions.sql", kind);
+                    return null;
+                }
+                return collectionVersionRepository.findVersion(kind.name()).orElse(null);
+            });
+            if (written != null) {
+                version.advance(written);
+                version.unwritten.addAndGet(-writes);
+            }
+        } catch (Exception e) {
+            // Kept as unwritten, so the local ETags stay distinct until the next sync retries
+            log.warn("Error incrementing collection version {}: {}", kind, e.getMessage());
+        }
+    }
+
+    private static final class Version {
+        private final AtomicLong written = new AtomicLong();
+        private final AtomicLong unwritten = new AtomicLong();
+        private final AtomicLong local = new AtomicLong();
+
+        private void advance(long version) {
+            written.accumulateAndGet(version, Math::max);
+        }
+    }
+}
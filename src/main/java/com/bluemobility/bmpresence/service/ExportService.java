@@ -0,0 +1,80 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.dto.UserDTO;
+import com.bluemobility.bmpresence.model.PresenceAppointment;
+import com.bluemobility.bmpresence.model.PresenceResource;
+import com.bluemobility.bmpresence.model.User;
+import com.bluemobility.bmpresence.repository.PresenceAppointmentRepository;
+import com.bluemobility.bmpresence.repository.PresenceResourceRepository;
+import com.bluemobility.bmpresence.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Writes whole tables as NDJSON (one JSON document per line). Rows are
+ * streamed from the database and detached once written, so memory use does
+ * not grow with the size of the table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExportService {
+
+    private final PresenceAppointmentRepository appointmentRepository;
+    private final UserRepository userRepository;
+    private final PresenceResourceRepository resourceRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final PresenceBuffer presenceBuffer;
+
+    @Transactional(readOnly = true)
+    public void exportAppointments(OutputStream out) throws IOException {
+        try (Stream<PresenceAppointment> appointments = appointmentRepository.streamAll()) {
+            long count = writeLines(appointments, Function.identity(), out);
+            log.info("Exported {} appointments", count);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportUsers(OutputStream out) throws IOException {
+        try (Stream<User> users = userRepository.streamAll()) {
+            long count = writeLines(users, user -> presenceBuffer.overlay(UserDTO.fromUser(user)), out);
+            log.info("Exported {} users", count);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportResources(OutputStream out) throws IOException {
+        try (Stream<PresenceResource> resources = resourceRepository.streamAll()) {
+            long count = writeLines(resources, Function.identity(), out);
+            log.info("Exported {} resources", count);
+        }
+    }
+
+    private <T> long writeLines(Stream<T> entities, Function<T, ?> mapper, OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writer();
+        long count = 0;
+        Iterator<T> iterator = entities.iterator();
+        while (iterator.hasNext()) {
+            T entity = iterator.next();
+            out.write(writer.writeValueAsBytes(mapper.apply(entity)));
+            out.write('\n');
+            // Written rows are not needed any more, keep the persistence context empty
+            entityManager.detach(entity);
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+}
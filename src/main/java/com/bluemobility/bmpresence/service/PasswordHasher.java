@@ -0,0 +1,192 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.AuthProperties;
+import com.bluemobility.bmpresence.exception.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes and verifies passwords with PBKDF2-HMAC-SHA256 on a dedicated,
+ * bounded pool, so a burst of logins cannot take over the request threads.
+ *
+ * <p>At most {@code auth.password-hashing.threads} hashes run at once and
+ * {@code auth.password-hashing.queue-capacity} more wait; beyond that the
+ * request fails fast with {@link PasswordHashingRejectedException}.
+ *
+ * <p>Hashes are stored as {@code pbkdf2-sha256$<iterations>$<hash>}, with the
+ * salt in its own column. Hashes without that prefix are the legacy salted
+ * SHA-256 and are still accepted; {@link #needsUpgrade} tells the caller to
+ * re-hash them once the password is known.
+ */
+@Service
+@Slf4j
+public class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int KEY_LENGTH_BITS = 256;
+    private static final int SALT_BYTES = 32;
+
+    private final AuthProperties.PasswordHashing settings;
+    private final ThreadPoolExecutor executor;
+    private final SecureRandom random = new SecureRandom();
+    private final Timer hashTimer;
+    private final Counter rejected;
+
+    public PasswordHasher(AuthProperties authProperties, MeterRegistry meterRegistry) {
+        this.settings = authProperties.getPasswordHashing();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, settings.getThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, settings.getQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.hashTimer = Timer.builder("auth.password.hash")
+                .description("Time spent computing a password hash, excluding the wait in the queue")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("auth.password.hash.rejected")
+                .description("Password hashing requests rejected because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hash.queue", executor, e -> e.getQueue().size())
+                .description("Password hashing requests waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashes being computed")
+                .register(meterRegistry);
+    }
+
+    public String generateSalt() {
+        byte[] saltBytes = new byte[SALT_BYTES];
+        random.nextBytes(saltBytes);
+        return Base64.getEncoder().encodeToString(saltBytes);
+    }
+
+    /**
+     * Hashes the password with the configured number of iterations.
+     */
+    public String hash(String password, String salt) {
+        int iterations = settings.getIterations();
+        byte[] hash = submit(() -> pbkdf2(password, salt, iterations));
+        return PREFIX + "$" + iterations + "$" + Base64.getEncoder().encodeToString(hash);
+    }
+
+    /**
+     * Checks the password against a stored hash, PBKDF2 or legacy.
+     */
+    public boolean verify(String password, String storedHash, String salt) {
+        if (storedHash == null || storedHash.isEmpty() || salt == null || salt.isEmpty()) {
+            return false;
+        }
+
+        try {
+            String[] parts = storedHash.split("\\$");
+            if (parts.length == 3 && PREFIX.equals(parts[0])) {
+                int iterations = Integer.parseInt(parts[1]);
+                byte[] expected = Base64.getDecoder().decode(parts[2]);
+                byte[] actual = submit(() -> pbkdf2(password, salt, iterations));
+                return MessageDigest.isEqual(expected, actual);
+            }
+
+            byte[] expected = Base64.getDecoder().decode(storedHash);
+            return MessageDigest.isEqual(expected, legacyHash(password, salt));
+        } catch (IllegalArgumentException e) {
+            log.warn("Stored password hash or salt is malformed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Whether the stored hash is weaker than the configured one and should be
+     * replaced after a successful login.
+     */
+    public boolean needsUpgrade(String storedHash) {
+        if (storedHash == null) {
+            return false;
+        }
+        String[] parts = storedHash.split("\\$");
+        if (parts.length != 3 || !PREFIX.equals(parts[0])) {
+            return true;
+        }
+        return Integer.parseInt(parts[1]) < settings.getIterations();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private byte[] submit(Callable<byte[]> task) {
+        Future<byte[]> future;
+        try {
+            future = executor.submit(() -> hashTimer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingRejectedException("Troppe richieste di accesso in corso. Riprovare tra poco");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error hashing password", e.getCause());
+        }
+    }
+
+    private static byte[] pbkdf2(String password, String salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), Base64.getDecoder().decode(salt), iterations,
+                KEY_LENGTH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static byte[] legacyHash(String password, String salt) {
+        try {
+            byte[] saltBytes = Base64.getDecoder().decode(salt);
+            byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+            byte[] saltedPassword = new byte[saltBytes.length + passwordBytes.length];
+
+            System.arraycopy(saltBytes, 0, saltedPassword, 0, saltBytes.length);
+            System.arraycopy(passwordBytes, 0, saltedPassword, saltBytes.length, passwordBytes.length);
+
+            return MessageDigest.getInstance("SHA-256").digest(saltedPassword);
+        } catch (NoSuchAlgorithmException e) {
+            log.error("Error hashing password", e);
+            throw new RuntimeException("Error hashing password", e);
+        }
+    }
+}
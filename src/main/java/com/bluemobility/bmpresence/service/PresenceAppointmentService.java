@@ -1,20 +1,48 @@
 package com.bluemobility.bmpresence.service;
 
+import com.bluemobility.bmpresence.config.AppointmentProperties;
+import com.bluemobility.bmpresence.dto.AppointmentBooking;
+import com.bluemobility.bmpresence.dto.AppointmentConflict;
+import com.bluemobility.bmpresence.dto.AppointmentCursor;
+import com.bluemobility.bmpresence.dto.AppointmentPage;
 import com.bluemobility.bmpresence.exception.AppointmentConflictException;
 import com.bluemobility.bmpresence.model.PresenceAppointment;
 import com.bluemobility.bmpresence.repository.PresenceAppointmentRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 @Service
+@Timed("service.invocations")
 @RequiredArgsConstructor
+@Slf4j
 public class PresenceAppointmentService {
 
+    private static final Comparator<PresenceAppointment> KEYSET_ORDER = Comparator
+            .comparing(PresenceAppointment::getStartTime)
+            .thenComparing(PresenceAppointment::getId);
+
     private final PresenceAppointmentRepository appointmentRepository;
+    private final AppointmentConflictIndex conflictIndex;
+    private final RecurrenceService recurrenceService;
+    private final AppointmentProperties appointmentProperties;
+    private final CollectionVersions collectionVersions;
+    private final TransactionTemplate transactionTemplate;
 
     public List<PresenceAppointment> findAll() {
         return appointmentRepository.findAll();
@@ -30,7 +58,81 @@ public class PresenceAppointmentService {
     }
 
     public List<PresenceAppointment> findByDateRange(LocalDateTime start, LocalDateTime end) {
-        return appointmentRepository.findByDateRange(start, end);
+        Map<Integer, PresenceAppointment> appointments = new LinkedHashMap<>();
+        appointmentRepository.findByDateRange(start, end)
+                .forEach(appointment -> appointments.put(appointment.getId(), appointment));
+
+        // Recurring series with any occurrence inside the range
+        for (PresenceAppointment series : appointmentRepository.findRecurringBetween(start, end)) {
+            if (!appointments.containsKey(series.getId()) && recurrenceService.occurrences(series, start, end).stream()
+                    .anyMatch(o -> !o.startTime().isBefore(start) && !o.endTime().isAfter(end))) {
+                appointments.put(series.getId(), series);
+            }
+        }
+
+        return new ArrayList<>(appointments.values());
+    }
+
+    /**
+     * Returns one page of the active appointments overlapping [start, end),
+     * ordered by (startTime, id), optionally filtered by resource and subject.
+     * Recurring series are included when one of their occurrences overlaps
+     * the range. Single appointments and series are read by separate keyset
+     * queries of at most {@code size} rows each and merged, so memory stays
+     * bounded however wide the range is.
+     */
+    @Transactional(readOnly = true)
+    public AppointmentPage findPageByDateRange(LocalDateTime start, LocalDateTime end, Integer resourceId,
+            String subject, String cursor, Integer size) {
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("La data di inizio deve precedere la data di fine");
+        }
+
+        AppointmentProperties.Page pageProperties = appointmentProperties.getPage();
+        int pageSize = size != null ? Math.clamp(size, 1, pageProperties.getMaxSize()) : pageProperties.getDefaultSize();
+        LocalDateTime earliestStart = start.minus(appointmentProperties.getMaxDuration());
+        AppointmentCursor after = AppointmentCursor.decode(cursor);
+
+        List<PresenceAppointment> items = new ArrayList<>(pageSize);
+        while (true) {
+            LocalDateTime afterStart = after != null ? after.startTime() : null;
+            Integer afterId = after != null ? after.id() : null;
+            List<PresenceAppointment> singles = appointmentRepository.findOverlapping(start, end, earliestStart,
+                    subject, resourceId, afterStart, afterId, Limit.of(pageSize + 1));
+            List<PresenceAppointment> series = appointmentRepository.findRecurringOverlapping(start, end, subject,
+                    resourceId, afterStart, afterId, Limit.of(pageSize + 1));
+            boolean moreSingles = singles.size() > pageSize;
+            boolean moreSeries = series.size() > pageSize;
+
+            int nextSingle = 0;
+            int nextSeries = 0;
+            while (true) {
+                boolean singlesLeft = nextSingle < singles.size();
+                boolean seriesLeft = nextSeries < series.size();
+                // Past the last row read from a query that has more, the merge order is unknown
+                if (!singlesLeft && moreSingles || !seriesLeft && moreSeries) {
+                    break;
+                }
+                if (!singlesLeft && !seriesLeft) {
+                    return new AppointmentPage(items, null);
+                }
+
+                PresenceAppointment appointment = !seriesLeft || singlesLeft
+                        && KEYSET_ORDER.compare(singles.get(nextSingle), series.get(nextSeries)) < 0
+                                ? singles.get(nextSingle++)
+                                : series.get(nextSeries++);
+                if (items.size() == pageSize) {
+                    return new AppointmentPage(items, after.encode());
+                }
+                after = AppointmentCursor.of(appointment);
+                // Series come back by their first occurrence and are skipped unless one falls in the range
+                if (!recurrenceService.isRecurring(appointment) || recurrenceService.stream(
+                        appointment.getRecurrenceRule(), appointment.getStartTime(), appointment.getEndTime(),
+                        start, end).findAny().isPresent()) {
+                    items.add(appointment);
+                }
+            }
+        }
     }
 
     public List<PresenceAppointment> findByResourceId(Integer resourceId) {
@@ -39,14 +141,22 @@ public class PresenceAppointmentService {
 
     @Transactional
     public PresenceAppointment create(PresenceAppointment appointment) {
+        recurrenceService.validate(appointment.getRecurrenceRule());
+        validateDuration(appointment);
         validateNoConflictingAppointment(appointment, null);
-        return appointmentRepository.save(appointment);
+        appointment.setRecurrenceEnd(recurrenceService.seriesEnd(appointment));
+        collectionVersions.bump(CollectionVersions.Kind.APPOINTMENTS);
+        PresenceAppointment savedAppointment = appointmentRepository.save(appointment);
+        conflictIndex.indexAfterCommit(savedAppointment);
+        return savedAppointment;
     }
 
     @Transactional
     public PresenceAppointment update(Integer id, PresenceAppointment appointmentDetails) {
         PresenceAppointment appointment = findById(id);
 
+        recurrenceService.validate(appointmentDetails.getRecurrenceRule());
+        validateDuration(appointmentDetails);
         validateNoConflictingAppointment(appointmentDetails, id);
 
         appointment.setSubject(appointmentDetails.getSubject());
@@ -55,13 +165,59 @@ public class PresenceAppointmentService {
         appointment.setRecurrenceRule(appointmentDetails.getRecurrenceRule());
         appointment.setResourceIds(appointmentDetails.getResourceIds());
         appointment.setActive(appointmentDetails.getActive());
+        appointment.setRecurrenceEnd(recurrenceService.seriesEnd(appointment));
 
-        return appointmentRepository.save(appointment);
+        collectionVersions.bump(CollectionVersions.Kind.APPOINTMENTS);
+        PresenceAppointment savedAppointment = appointmentRepository.save(appointment);
+        conflictIndex.indexAfterCommit(savedAppointment);
+        recurrenceService.evictAfterCommit(id);
+        return savedAppointment;
     }
 
     @Transactional
     public void delete(Integer id) {
+        collectionVersions.bump(CollectionVersions.Kind.APPOINTMENTS);
         appointmentRepository.deleteById(id);
+        conflictIndex.removeAfterCommit(id);
+        recurrenceService.evictAfterCommit(id);
+    }
+
+    /**
+     * Stores the end of bounded series saved before it was stored, so range
+     * queries can skip them once they are over.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillRecurrenceEnds() {
+        try {
+            int updated = transactionTemplate.execute(status -> {
+                int count = 0;
+                for (PresenceAppointment series : appointmentRepository.findBoundedRecurringWithoutEnd()) {
+                    LocalDateTime recurrenceEnd = recurrenceService.seriesEnd(series);
+                    if (recurrenceEnd != null) {
+                        count += appointmentRepository.updateRecurrenceEnd(series.getId(), recurrenceEnd);
+                    }
+                }
+                return count;
+            });
+            if (updated > 0) {
+                log.info("Stored the end of {} recurring series", updated);
+            }
+        } catch (Exception e) {
+            log.error("Error storing the end of recurring series: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Range queries only look back {@code appointments.max-duration} from
+     * their start, so longer appointments would never be found.
+     */
+    private void validateDuration(PresenceAppointment appointment) {
+        if (appointment.getStartTime() != null && appointment.getEndTime() != null
+                && appointment.getEndTime().isAfter(
+                        appointment.getStartTime().plus(appointmentProperties.getMaxDuration()))) {
+            throw new IllegalArgumentException(String.format("Un appuntamento non può durare più di %d giorni",
+                    appointmentProperties.getMaxDuration().toDays()));
+        }
     }
 
     private void validateNoConflictingAppointment(PresenceAppointment appointment, Integer currentAppointmentId) {
@@ -70,29 +226,67 @@ public class PresenceAppointmentService {
             return;
         }
 
-        LocalDate appointmentDate = appointment.getStartTime().toLocalDate();
-        LocalDateTime startOfDay = appointmentDate.atStartOfDay();
-        LocalDateTime endOfDay = appointmentDate.plusDays(1).atStartOfDay();
-
-        for (Integer resourceId : appointment.getResourceIds()) {
-            List<PresenceAppointment> conflicts = appointmentRepository.findConflictingAppointments(
-                    appointment.getSubject(),
-                    resourceId,
-                    startOfDay,
-                    endOfDay);
-
-            // Filter the current appointment if we are updating
-            if (currentAppointmentId != null) {
-                conflicts = conflicts.stream()
-                        .filter(a -> !a.getId().equals(currentAppointmentId))
-                        .toList();
-            }
+        boolean useIndex = conflictIndex.isReady();
+        List<LocalDate> bookedDays = bookedDays(appointment);
+
+        Map<LocalDate, List<AppointmentConflict>> conflictsByDay = useIndex ? Map.of()
+                : findConflictsInDatabase(appointment, bookedDays.get(0).atStartOfDay(),
+                        bookedDays.get(bookedDays.size() - 1).plusDays(1).atStartOfDay(), currentAppointmentId);
+
+        for (LocalDate appointmentDate : bookedDays) {
+            List<AppointmentConflict> conflicts = useIndex
+                    ? conflictIndex.findConflicts(appointment.getSubject(), appointment.getResourceIds(),
+                            appointmentDate.atStartOfDay(), appointmentDate.plusDays(1).atStartOfDay(),
+                            currentAppointmentId)
+                    : conflictsByDay.getOrDefault(appointmentDate, List.of());
 
             if (!conflicts.isEmpty()) {
                 throw new AppointmentConflictException(
                         String.format("La persona '%s' ha già un appuntamento assegnato per la risorsa %d il giorno %s",
-                                appointment.getSubject(), resourceId, appointmentDate));
+                                appointment.getSubject(), conflicts.get(0).resourceId(), appointmentDate));
             }
         }
     }
+
+    /**
+     * Days on which the appointment takes place: its start day or, for a
+     * recurring series, the day of every occurrence within the conflict
+     * horizon.
+     */
+    private List<LocalDate> bookedDays(PresenceAppointment appointment) {
+        return recurrenceService.bookedOccurrences(appointment).stream()
+                .map(occurrence -> occurrence.startTime().toLocalDate())
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Loads the subject's appointments on the booked resources across the
+     * whole booked span, single ones and series in one query each, and
+     * buckets their conflicts by day, ordered by resource.
+     */
+    private Map<LocalDate, List<AppointmentConflict>> findConflictsInDatabase(PresenceAppointment appointment,
+            LocalDateTime from, LocalDateTime to, Integer currentAppointmentId) {
+        List<String> subjects = List.of(appointment.getSubject());
+        List<AppointmentBooking> bookings = new ArrayList<>(appointmentRepository.findBookings(subjects,
+                appointment.getResourceIds(), from, to));
+        bookings.addAll(appointmentRepository.findRecurringBookings(subjects, appointment.getResourceIds(), from, to));
+
+        Map<LocalDate, List<AppointmentConflict>> conflictsByDay = new HashMap<>();
+        // Series overlapping the span with their first occurrence are returned by both queries
+        for (AppointmentBooking booking : new LinkedHashSet<>(bookings)) {
+            if (booking.appointmentId().equals(currentAppointmentId)) {
+                continue;
+            }
+            AppointmentConflict conflict = new AppointmentConflict(booking.resourceId(), booking.appointmentId());
+            recurrenceService.stream(booking.recurrenceRule(), booking.startTime(), booking.endTime(), from, to)
+                    .flatMap(occurrence -> occurrence.conflictDays().stream())
+                    .forEach(day -> conflictsByDay.computeIfAbsent(day, d -> new ArrayList<>()).add(conflict));
+        }
+
+        conflictsByDay.values().forEach(conflicts -> conflicts.sort(Comparator
+                .comparing(AppointmentConflict::resourceId)
+                .thenComparing(AppointmentConflict::appointmentId)));
+        return conflictsByDay;
+    }
 }
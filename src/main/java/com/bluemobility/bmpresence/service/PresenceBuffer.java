@@ -0,0 +1,265 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.PresenceProperties;
+import com.bluemobility.bmpresence.dto.PresenceChange;
+import com.bluemobility.bmpresence.dto.UserDTO;
+import com.bluemobility.bmpresence.model.User;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for the online status and last activity of users.
+ *
+ * <p>Heartbeats and logins only update an in-memory entry per user, so any
+ * number of them between two flushes costs a single row update. Pending
+ * entries are written periodically with one batched UPDATE and drained on
+ * shutdown. An entry stays visible to readers until the flush that wrote it
+ * has committed, and the written users are then evicted from the
+ * second-level cache. A flush that takes a user online or offline bumps the
+ * users version; one that only records activity does not. Every recorded
+ * state is also published as a {@link PresenceChange} event.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PresenceBuffer {
+
+    private static final String UPDATE_PRESENCE = "UPDATE Users SET IsOnline = ?, "
+            + "LastActiveAt = COALESCE(?, LastActiveAt), LastUpdated = ? WHERE Id = ?";
+    private static final String EXPIRE_PRESENCE = "UPDATE Users SET IsOnline = FALSE, LastUpdated = ? "
+            + "WHERE Id = ? AND IsOnline = TRUE AND (LastActiveAt IS NULL OR LastActiveAt < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PresenceProperties presenceProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManagerFactory entityManagerFactory;
+    private final CollectionVersions collectionVersions;
+
+    private final Map<Integer, PresenceState> pending = new ConcurrentHashMap<>();
+    // A lock rather than synchronized: the flush blocks on JDBC and may run on a virtual thread
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * Records the user as online, active now.
+     */
+    public void markActive(Integer userId) {
+        record(userId, new PresenceState(true, LocalDateTime.now()));
+    }
+
+    /**
+     * Records an online status change. Going online also counts as activity.
+     */
+    public void markOnline(Integer userId, boolean online) {
+        record(userId, new PresenceState(online, online ? LocalDateTime.now() : null));
+    }
+
+    /**
+     * Drops any buffered state of the user, for when the row is written or
+     * deleted directly.
+     */
+    public void discard(Integer userId) {
+        pending.remove(userId);
+    }
+
+    public Optional<PresenceState> get(Integer userId) {
+        return Optional.ofNullable(pending.get(userId));
+    }
+
+    /**
+     * Returns a copy of the buffered states by user ID.
+     */
+    public Map<Integer, PresenceState> snapshot() {
+        return Map.copyOf(pending);
+    }
+
+    /**
+     * Applies the buffered last activity of the user, if any, to the DTO.
+     */
+    public UserDTO overlay(UserDTO user) {
+        if (user != null) {
+            PresenceState state = pending.get(user.getId());
+            if (state != null && state.lastActiveAt() != null) {
+                user.setLastActiveAt(state.lastActiveAt());
+            }
+        }
+        return user;
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Writes the users as offline unless they are still active: users with
+     * buffered state are left to the next flush, and the others only go
+     * offline if the last activity written by any instance is older than
+     * {@code activeBefore}. Returns the users written offline.
+     */
+    public List<Integer> expire(Collection<Integer> userIds, LocalDateTime activeBefore) {
+        flushLock.lock();
+        try {
+            List<Integer> candidates = userIds.stream()
+                    .filter(userId -> !pending.containsKey(userId))
+                    .toList();
+            if (candidates.isEmpty()) {
+                return List.of();
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            int batchSize = presenceProperties.getBuffer().getBatchSize();
+            List<Integer> expired = new ArrayList<>();
+            transactionTemplate.executeWithoutResult(status -> {
+                int[][] counts = jdbcTemplate.batchUpdate(EXPIRE_PRESENCE, candidates, batchSize, (ps, userId) -> {
+                    ps.setObject(1, now);
+                    ps.setInt(2, userId);
+                    ps.setObject(3, activeBefore);
+                });
+                int index = 0;
+                for (int[] batch : counts) {
+                    for (int count : batch) {
+                        if (count > 0) {
+                            expired.add(candidates.get(index));
+                        }
+                        index++;
+                    }
+                }
+                if (!expired.isEmpty()) {
+                    collectionVersions.bump(CollectionVersions.Kind.USERS);
+                }
+            });
+
+            Cache entityCache = entityManagerFactory.getCache();
+            for (Integer userId : expired) {
+                entityCache.evict(User.class, userId);
+                // Active again since the check: the next flush writes it back online
+                if (!pending.containsKey(userId)) {
+                    eventPublisher.publishEvent(new PresenceChange(userId, false, null));
+                }
+            }
+            return expired;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${presence.buffer.flush-interval:5s}")
+    public void flush() {
+        try {
+            flushPending();
+        } catch (Exception e) {
+            // Entries stay buffered and are retried on the next flush
+            log.error("Error flushing presence buffer: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        try {
+            int flushed = flushPending();
+            log.info("Presence buffer drained, {} users written", flushed);
+        } catch (Exception e) {
+            log.error("Error draining presence buffer, {} users not written: {}", pending.size(), e.getMessage());
+        }
+    }
+
+    private int flushPending() {
+        flushLock.lock();
+        try {
+            return flushPendingLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private int flushPendingLocked() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        List<Map.Entry<Integer, PresenceState>> entries = new ArrayList<>(pending.size());
+        pending.forEach((userId, state) -> entries.add(Map.entry(userId, state)));
+
+        LocalDateTime now = LocalDateTime.now();
+        int batchSize = presenceProperties.getBuffer().getBatchSize();
+        transactionTemplate.executeWithoutResult(status -> {
+            boolean statusChanged = changesOnlineStatus(entries, batchSize);
+            jdbcTemplate.batchUpdate(UPDATE_PRESENCE, entries, batchSize, (ps, entry) -> {
+                ps.setBoolean(1, entry.getValue().online());
+                ps.setObject(2, entry.getValue().lastActiveAt());
+                ps.setObject(3, now);
+                ps.setInt(4, entry.getKey());
+            });
+            // Heartbeats alone leave the user lists' ETag as it is
+            if (statusChanged) {
+                collectionVersions.bump(CollectionVersions.Kind.USERS);
+            }
+        });
+
+        // The batch bypasses Hibernate, so drop the users it wrote from the second-level cache
+        Cache entityCache = entityManagerFactory.getCache();
+        entries.forEach(entry -> entityCache.evict(User.class, entry.getKey()));
+
+        // Keep entries that changed while flushing for the next round
+        entries.forEach(entry -> pending.remove(entry.getKey(), entry.getValue()));
+        log.debug("Flushed presence of {} users", entries.size());
+        return entries.size();
+    }
+
+    /**
+     * Whether any of the entries takes a user online or offline, compared
+     * with the status currently written.
+     */
+    private boolean changesOnlineStatus(List<Map.Entry<Integer, PresenceState>> entries, int batchSize) {
+        Map<Integer, Boolean> written = new HashMap<>();
+        for (int from = 0; from < entries.size(); from += batchSize) {
+            List<Map.Entry<Integer, PresenceState>> chunk = entries.subList(from,
+                    Math.min(from + batchSize, entries.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query("SELECT Id, IsOnline FROM Users WHERE Id IN (" + placeholders + ")",
+                    (RowCallbackHandler) rs -> written.put(rs.getInt(1), rs.getBoolean(2)),
+                    chunk.stream().map(Map.Entry::getKey).toArray());
+        }
+        return entries.stream().anyMatch(entry -> {
+            Boolean online = written.get(entry.getKey());
+            return online != null && online != entry.getValue().online();
+        });
+    }
+
+    private void record(Integer userId, PresenceState state) {
+        PresenceState merged = pending.merge(userId, state, PresenceState::then);
+        eventPublisher.publishEvent(new PresenceChange(userId, merged.online(), merged.lastActiveAt()));
+    }
+
+    /**
+     * Latest known presence of a user. {@code lastActiveAt} is {@code null}
+     * when only the online flag changed.
+     */
+    public record PresenceState(boolean online, LocalDateTime lastActiveAt) {
+
+        PresenceState then(PresenceState next) {
+            return new PresenceState(next.online(),
+                    next.lastActiveAt() != null ? next.lastActiveAt() : lastActiveAt);
+        }
+    }
+}
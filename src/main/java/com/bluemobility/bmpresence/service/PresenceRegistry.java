@@ -0,0 +1,224 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.PresenceProperties;
+import com.bluemobility.bmpresence.dto.PresenceChange;
+import com.bluemobility.bmpresence.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * In-memory registry of the users seen on this instance, keyed by user ID
+ * with the time each one was last seen.
+ *
+ * <p>Users are added on any {@link PresenceChange} that says they are online
+ * (login, session restore, online status update) and removed on logout or
+ * once they have not been seen here for {@code presence.registry.ttl}.
+ * Expiry uses a hashed timer wheel with one slot per
+ * {@code presence.registry.tick}: a heartbeat only updates the last-seen
+ * time, and an entry whose slot comes up while it is still fresh is moved to
+ * the slot of its new deadline. Heartbeats and expiry update an entry
+ * atomically, so a user seen while expiring stays online.
+ *
+ * <p>Heartbeats of the same user may reach other instances, so an expired
+ * user is only written offline if the last activity written by any instance
+ * is older than the TTL as well (see {@link PresenceBuffer#expire}). Users
+ * that no instance is tracking, for example after a restart, are swept from
+ * the {@code IsOnline} column every {@code presence.registry.sweep-interval}
+ * on the same condition. The online list itself is read from that column.
+ */
+@Service
+@Slf4j
+public class PresenceRegistry {
+
+    private final UserRepository userRepository;
+    private final PresenceBuffer presenceBuffer;
+    private final long ttlMillis;
+    private final long tickMillis;
+
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry>[] wheel;
+    private long lastTick;
+
+    @SuppressWarnings("unchecked")
+    public PresenceRegistry(UserRepository userRepository, PresenceBuffer presenceBuffer,
+            PresenceProperties presenceProperties, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.presenceBuffer = presenceBuffer;
+        this.ttlMillis = presenceProperties.getRegistry().getTtl().toMillis();
+        this.tickMillis = Math.max(1, presenceProperties.getRegistry().getTick().toMillis());
+
+        // One slot per tick of the TTL, plus one so a deadline never wraps onto the current slot
+        int slots = (int) (ttlMillis / tickMillis) + 2;
+        this.wheel = new Queue[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.lastTick = System.currentTimeMillis() / tickMillis;
+
+        Gauge.builder("presence.registry.online", entries, Map::size)
+                .description("Users seen on this instance within the TTL")
+                .register(meterRegistry);
+    }
+
+    public boolean isOnline(Integer userId) {
+        return entries.containsKey(userId);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @EventListener
+    public void onPresenceChange(PresenceChange change) {
+        if (change.online()) {
+            touch(change.userId());
+        } else {
+            remove(change.userId());
+        }
+    }
+
+    /**
+     * Marks the user as seen now, adding it to the registry if needed.
+     */
+    public void touch(Integer userId) {
+        long now = System.currentTimeMillis();
+        boolean[] created = new boolean[1];
+        Entry entry = entries.compute(userId, (id, existing) -> {
+            if (existing == null) {
+                created[0] = true;
+                return new Entry(id, now);
+            }
+            existing.lastSeen = now;
+            return existing;
+        });
+        if (created[0]) {
+            schedule(entry);
+        }
+    }
+
+    /**
+     * Removes the user without recording anything, for when the caller
+     * already wrote the new state.
+     */
+    public void remove(Integer userId) {
+        entries.remove(userId);
+    }
+
+    /**
+     * Advances the wheel to the current time and expires the users whose
+     * deadline has passed.
+     */
+    @Scheduled(fixedDelayString = "${presence.registry.tick:1s}")
+    public void tick() {
+        long now = System.currentTimeMillis();
+        List<Integer> expired = new ArrayList<>();
+        synchronized (wheel) {
+            long currentTick = now / tickMillis;
+            // After a long pause every slot is due, so one lap is enough
+            long from = Math.max(lastTick + 1, currentTick - wheel.length + 1);
+            for (long tick = from; tick <= currentTick; tick++) {
+                Queue<Entry> slot = wheel[(int) (tick % wheel.length)];
+                for (Entry entry = slot.poll(); entry != null; entry = slot.poll()) {
+                    if (entries.get(entry.userId) != entry) {
+                        continue;
+                    }
+                    if (removeIfExpired(entry, now)) {
+                        expired.add(entry.userId);
+                    } else if (entries.get(entry.userId) == entry) {
+                        wheel[slotOf(entry, currentTick)].add(entry);
+                    }
+                }
+            }
+            lastTick = currentTick;
+        }
+
+        // Seen again since the entry was removed
+        expired.removeIf(entries::containsKey);
+        if (!expired.isEmpty()) {
+            List<Integer> offline = presenceBuffer.expire(expired, activeBefore(now));
+            log.debug("{} of {} users went offline after {} ms without activity",
+                    offline.size(), expired.size(), ttlMillis);
+        }
+    }
+
+    /**
+     * Writes offline the users marked online in the database that no
+     * instance has written any activity for within the TTL, such as users
+     * whose instance stopped before expiring them.
+     */
+    @Scheduled(fixedDelayString = "${presence.registry.sweep-interval:30s}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        try {
+            List<Integer> inactive = new ArrayList<>(userRepository.findInactiveOnlineIds(activeBefore(now)));
+            inactive.removeIf(entries::containsKey);
+            if (!inactive.isEmpty()) {
+                List<Integer> offline = presenceBuffer.expire(inactive, activeBefore(now));
+                log.debug("Swept {} inactive users offline", offline.size());
+            }
+        } catch (Exception e) {
+            log.warn("Error sweeping inactive users: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the entry if it is still registered and its deadline has
+     * passed. Atomic with {@link #touch}: a heartbeat lands either before,
+     * keeping the entry, or after, adding a new one.
+     */
+    private boolean removeIfExpired(Entry entry, long now) {
+        boolean[] removed = new boolean[1];
+        entries.computeIfPresent(entry.userId, (userId, current) -> {
+            if (current == entry && entry.lastSeen + ttlMillis <= now) {
+                removed[0] = true;
+                return null;
+            }
+            return current;
+        });
+        return removed[0];
+    }
+
+    private LocalDateTime activeBefore(long now) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(now - ttlMillis), ZoneId.systemDefault());
+    }
+
+    private void schedule(Entry entry) {
+        synchronized (wheel) {
+            wheel[slotOf(entry, lastTick)].add(entry);
+        }
+    }
+
+    /**
+     * Slot of the entry's deadline, never earlier than the tick after
+     * {@code currentTick}.
+     */
+    private int slotOf(Entry entry, long currentTick) {
+        long deadlineTick = (entry.lastSeen + ttlMillis) / tickMillis;
+        long tick = Math.min(Math.max(deadlineTick, currentTick + 1), currentTick + wheel.length - 1);
+        return (int) (tick % wheel.length);
+    }
+
+    private static final class Entry {
+        private final Integer userId;
+        private volatile long lastSeen;
+
+        private Entry(Integer userId, long lastSeen) {
+            this.userId = userId;
+            this.lastSeen = lastSeen;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.PresenceProperties;
+import com.bluemobility.bmpresence.model.PresenceResource;
+import com.bluemobility.bmpresence.repository.PresenceResourceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Read-through cache of the resource catalog.
+ *
+ * <p>The whole catalog is held as an immutable snapshot behind an
+ * {@link AtomicReference}: readers never lock, and each committed write
+ * replaces the snapshot with a modified copy. The snapshot is loaded from the
+ * database on first use and after {@link #refresh()}, and reloaded when the
+ * resources version in the database has changed, which is checked at most
+ * every {@code presence.catalog.version-check-interval}; that bounds how long
+ * writes made on other instances take to show here. Callers get their own
+ * copies of the cached resources, so modifying one cannot change the catalog.
+ * This is the only cache of resources; Hibernate's second-level cache does
+ * not hold them.
+ */
+@Service
+@Slf4j
+public class PresenceResourceCatalog {
+
+    private final PresenceResourceRepository resourceRepository;
+    private final CollectionVersions collectionVersions;
+    private final long versionCheckIntervalNanos;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong writes = new AtomicLong();
+    // A lock rather than synchronized: loading blocks on JDBC and may run on a virtual thread
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile long nextVersionCheck;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    public PresenceResourceCatalog(PresenceResourceRepository resourceRepository,
+            CollectionVersions collectionVersions, PresenceProperties presenceProperties) {
+        this.resourceRepository = resourceRepository;
+        this.collectionVersions = collectionVersions;
+        this.versionCheckIntervalNanos = presenceProperties.getCatalog().getVersionCheckInterval().toNanos();
+    }
+
+    public List<PresenceResource> findAll() {
+        return copies(current().all());
+    }
+
+    public List<PresenceResource> findAllActive() {
+        return copies(current().active());
+    }
+
+    public Optional<PresenceResource> findById(Integer id) {
+        return Optional.ofNullable(current().byId().get(id)).map(PresenceResourceCatalog::copy);
+    }
+
+    /**
+     * Puts a copy of the resource in the catalog once the current transaction
+     * commits.
+     */
+    public void putAfterCommit(PresenceResource resource) {
+        PresenceResource copy = copy(resource);
+        afterCommit(() -> apply(resources -> {
+            resources.put(copy.getId(), copy);
+            return resources;
+        }));
+    }
+
+    public void removeAfterCommit(Integer id) {
+        afterCommit(() -> apply(resources -> {
+            resources.remove(id);
+            return resources;
+        }));
+    }
+
+    /**
+     * Drops the snapshot and loads it again from the database. The resource
+     * ETags change too, since the reload may pick up outside changes.
+     */
+    public Stats refresh() {
+        writes.incrementAndGet();
+        snapshot.set(null);
+        collectionVersions.bump(CollectionVersions.Kind.RESOURCES);
+        current();
+        return stats();
+    }
+
+    public Stats stats() {
+        Snapshot current = snapshot.get();
+        return new Stats(
+                current != null,
+                current != null ? current.all().size() : 0,
+                current != null ? current.builtAt() : null,
+                hits.sum(),
+                misses.sum(),
+                updates.sum(),
+                loads.sum());
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot.get();
+        if (current != null) {
+            hits.increment();
+            // One reader checks the version while the others keep the current snapshot
+            if (System.nanoTime() - nextVersionCheck >= 0 && loadLock.tryLock()) {
+                try {
+                    return reloadIfChanged(current);
+                } finally {
+                    loadLock.unlock();
+                }
+            }
+            return current;
+        }
+
+        misses.increment();
+        loadLock.lock();
+        try {
+            current = snapshot.get();
+            if (current != null) {
+                return current;
+            }
+            return load(null);
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Reloads the snapshot if the resources version in the database is no
+     * longer the one it was loaded at. Called with the load lock held.
+     */
+    private Snapshot reloadIfChanged(Snapshot current) {
+        nextVersionCheck = System.nanoTime() + versionCheckIntervalNanos;
+        try {
+            if (collectionVersions.version(CollectionVersions.Kind.RESOURCES) == current.version()) {
+                return current;
+            }
+            return load(current);
+        } catch (Exception e) {
+            // Checked again after the next interval
+            log.warn("Error reloading resource catalog: {}", e.getMessage());
+            return current;
+        }
+    }
+
+    /**
+     * Loads the catalog and swaps it in for {@code expected}. Called with the
+     * load lock held.
+     */
+    private Snapshot load(Snapshot expected) {
+        nextVersionCheck = System.nanoTime() + versionCheckIntervalNanos;
+        long writesBefore = writes.get();
+        // Read before the resources, so a write committed in between only causes another reload
+        long version = collectionVersions.version(CollectionVersions.Kind.RESOURCES);
+        Snapshot loaded = Snapshot.of(resourceRepository.findAll().stream()
+                .map(PresenceResourceCatalog::copy)
+                .toList(), version);
+        loads.increment();
+        // A write committed while loading may be missing from the result;
+        // keep the snapshot that write was applied to instead
+        if (writes.get() == writesBefore && snapshot.compareAndSet(expected, loaded)) {
+            log.debug("Resource catalog loaded with {} resources at version {}", loaded.all().size(), version);
+        }
+        return loaded;
+    }
+
+    private void apply(UnaryOperator<Map<Integer, PresenceResource>> change) {
+        writes.incrementAndGet();
+        // Keeps the version it was loaded at, so the next check reloads with this write included
+        snapshot.updateAndGet(current -> current == null
+                ? null
+                : Snapshot.of(change.apply(new HashMap<>(current.byId())).values(), current.version()));
+        updates.increment();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static List<PresenceResource> copies(List<PresenceResource> resources) {
+        return resources.stream().map(PresenceResourceCatalog::copy).toList();
+    }
+
+    private static PresenceResource copy(PresenceResource resource) {
+        return new PresenceResource(resource.getId(), resource.getName(), resource.getBackground(),
+                resource.getForeground(), resource.getActive(), resource.getCreatedAt(), resource.getUpdatedAt());
+    }
+
+    private record Snapshot(List<PresenceResource> all, List<PresenceResource> active,
+            Map<Integer, PresenceResource> byId, long version, Instant builtAt) {
+
+        static Snapshot of(Collection<PresenceResource> resources, long version) {
+            List<PresenceResource> all = resources.stream()
+                    .sorted(Comparator.comparing(PresenceResource::getId))
+                    .toList();
+            List<PresenceResource> active = all.stream()
+                    .filter(resource -> Boolean.TRUE.equals(resource.getActive()))
+                    .toList();
+            Map<Integer, PresenceResource> byId = new HashMap<>();
+            all.forEach(resource -> byId.put(resource.getId(), resource));
+            return new Snapshot(all, active, Map.copyOf(byId), version, Instant.now());
+        }
+    }
+
+    public record Stats(boolean loaded, int size, Instant builtAt, long hits, long misses, long updates,
+            long loads) {
+    }
+}
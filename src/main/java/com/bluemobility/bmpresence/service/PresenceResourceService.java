@@ -2,56 +2,78 @@ package com.bluemobility.bmpresence.service;
 
 import com.bluemobility.bmpresence.model.PresenceResource;
 import com.bluemobility.bmpresence.repository.PresenceResourceRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
 @Service
+@Timed("service.invocations")
 @RequiredArgsConstructor
 public class PresenceResourceService {
 
     private final PresenceResourceRepository resourceRepository;
+    private final CollectionVersions collectionVersions;
+    private final PresenceResourceCatalog resourceCatalog;
 
     public List<PresenceResource> findAll() {
-        return resourceRepository.findAll();
+        return resourceCatalog.findAll();
     }
 
     public List<PresenceResource> findAllActive() {
-        return resourceRepository.findByActiveTrue();
+        return resourceCatalog.findAllActive();
     }
 
     public PresenceResource findById(Integer id) {
+        return resourceCatalog.findById(id)
+                .orElseThrow(() -> new RuntimeException("Risorsa non trovata con id: " + id));
+    }
+
+    /**
+     * Loads the resource from the database for modification; the catalog
+     * only hands out detached copies.
+     */
+    private PresenceResource loadForUpdate(Integer id) {
         return resourceRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Risorsa non trovata con id: " + id));
     }
 
     @Transactional
     public PresenceResource create(PresenceResource resource) {
-        return resourceRepository.save(resource);
+        collectionVersions.bump(CollectionVersions.Kind.RESOURCES);
+        PresenceResource savedResource = resourceRepository.save(resource);
+        resourceCatalog.putAfterCommit(savedResource);
+        return savedResource;
     }
 
     @Transactional
     public PresenceResource update(Integer id, PresenceResource resourceDetails) {
-        PresenceResource resource = findById(id);
+        PresenceResource resource = loadForUpdate(id);
 
         resource.setName(resourceDetails.getName());
         resource.setBackground(resourceDetails.getBackground());
         resource.setForeground(resourceDetails.getForeground());
         resource.setActive(resourceDetails.getActive());
 
-        return resourceRepository.save(resource);
+        collectionVersions.bump(CollectionVersions.Kind.RESOURCES);
+        PresenceResource savedResource = resourceRepository.saveAndFlush(resource);
+        resourceCatalog.putAfterCommit(savedResource);
+        return savedResource;
     }
 
     @Transactional
     public void delete(Integer id) {
-        PresenceResource resource = findById(id);
+        PresenceResource resource = loadForUpdate(id);
         resource.setActive(false);
-        resourceRepository.save(resource);
+        collectionVersions.bump(CollectionVersions.Kind.RESOURCES);
+        resourceCatalog.putAfterCommit(resourceRepository.saveAndFlush(resource));
     }
 
     @Transactional
     public void hardDelete(Integer id) {
+        collectionVersions.bump(CollectionVersions.Kind.RESOURCES);
         resourceRepository.deleteById(id);
+        resourceCatalog.removeAfterCommit(id);
     }
 }
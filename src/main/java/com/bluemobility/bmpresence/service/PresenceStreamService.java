@@ -0,0 +1,278 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.PresenceProperties;
+import com.bluemobility.bmpresence.dto.PresenceChange;
+import com.bluemobility.bmpresence.dto.UserDTO;
+import com.bluemobility.bmpresence.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes the online users to SSE subscribers: a {@code snapshot} event when
+ * they connect, then {@code presence} events carrying only the users whose
+ * presence changed.
+ *
+ * <p>Changes are collected in one map keyed by user and fanned out by a
+ * single scheduled dispatcher, so bursts from the same user collapse into one
+ * delta. Each subscriber has its own coalescing map and at most one send in
+ * flight on a virtual thread: a slow consumer only delays itself, and while it
+ * is busy newer changes overwrite older ones for the same user. A subscriber
+ * that falls more than {@code presence.stream.max-pending} users behind drops
+ * its deltas and gets a fresh snapshot instead.
+ *
+ * <p>Changes recorded on other instances reach this one by polling the users
+ * updated since the previous poll every {@code presence.stream.sync-interval},
+ * so a subscriber sees every instance's changes wherever it is connected.
+ */
+@Service
+@Slf4j
+public class PresenceStreamService {
+
+    private final UserService userService;
+    private final UserRepository userRepository;
+    private final PresenceBuffer presenceBuffer;
+    private final PresenceProperties presenceProperties;
+
+    private final Map<Integer, PresenceChange> published = new ConcurrentHashMap<>();
+    private final Map<Integer, PresenceChange> undispatched = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService sender = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile LocalDateTime lastSync = LocalDateTime.now();
+
+    public PresenceStreamService(UserService userService, UserRepository userRepository,
+            PresenceBuffer presenceBuffer, PresenceProperties presenceProperties, MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.userRepository = userRepository;
+        this.presenceBuffer = presenceBuffer;
+        this.presenceProperties = presenceProperties;
+
+        Gauge.builder("presence.stream.subscribers", subscribers, Set::size)
+                .description("Open presence stream connections")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream for the current request. The snapshot is sent right
+     * away, without holding a request thread for the life of the connection.
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(presenceProperties.getStream().getTimeout().toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        // Registered before the snapshot is read, so no later change is missed
+        subscribers.add(subscriber);
+        subscriber.kick();
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @EventListener
+    public void onPresenceChange(PresenceChange change) {
+        publish(change);
+    }
+
+    /**
+     * Publishes the presence of users written by any instance since the
+     * previous poll. Each poll reaches one interval further back, so rows
+     * committed late or stamped by a slightly slower clock are still seen;
+     * re-read rows are dropped by {@link #publish} like repeated changes.
+     * Users with state buffered here are skipped, since that state is newer
+     * and already published. Without subscribers nothing is read: a new
+     * subscriber starts from a snapshot.
+     */
+    @Scheduled(fixedDelayString = "${presence.stream.sync-interval:5s}")
+    public void sync() {
+        LocalDateTime now = LocalDateTime.now();
+        if (subscribers.isEmpty()) {
+            lastSync = now;
+            return;
+        }
+
+        try {
+            LocalDateTime since = lastSync.minus(presenceProperties.getStream().getSyncInterval());
+            for (PresenceChange change : userRepository.findPresenceChangedSince(since)) {
+                if (presenceBuffer.get(change.userId()).isEmpty()) {
+                    publish(change);
+                }
+            }
+            lastSync = now;
+        } catch (Exception e) {
+            // Retried from the same point on the next poll
+            log.warn("Error reading presence changes: {}", e.getMessage());
+        }
+    }
+
+    private void publish(PresenceChange change) {
+        long resolution = presenceProperties.getStream().getActivityResolution().toMillis();
+        published.compute(change.userId(), (userId, previous) -> {
+            if (previous != null && previous.online() == change.online()
+                    && !activityAdvanced(previous, change, resolution)) {
+                return previous;
+            }
+            undispatched.put(userId, change);
+            return change;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${presence.stream.dispatch-interval:250ms}")
+    public void dispatch() {
+        if (undispatched.isEmpty()) {
+            return;
+        }
+
+        List<PresenceChange> changes = new ArrayList<>(undispatched.size());
+        for (Integer userId : undispatched.keySet()) {
+            PresenceChange change = undispatched.remove(userId);
+            if (change != null) {
+                changes.add(change);
+            }
+        }
+
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(changes);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${presence.stream.heartbeat-interval:25s}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.ping();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+        sender.shutdownNow();
+    }
+
+    private static boolean activityAdvanced(PresenceChange previous, PresenceChange change, long resolutionMillis) {
+        if (change.lastActiveAt() == null) {
+            return false;
+        }
+        return previous.lastActiveAt() == null
+                || Duration.between(previous.lastActiveAt(), change.lastActiveAt()).toMillis() >= resolutionMillis;
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Map<Integer, PresenceChange> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean resync = true;
+        private volatile boolean ping;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(List<PresenceChange> changes) {
+            if (resync) {
+                return;
+            }
+            for (PresenceChange change : changes) {
+                pending.put(change.userId(), change);
+            }
+            if (pending.size() > presenceProperties.getStream().getMaxPending()) {
+                // Too far behind: a snapshot is cheaper than replaying every delta
+                resync = true;
+                pending.clear();
+            }
+            kick();
+        }
+
+        private void ping() {
+            ping = true;
+            kick();
+        }
+
+        /**
+         * Starts a send unless one is already in flight; that one picks up
+         * whatever was added in the meantime.
+         */
+        private void kick() {
+            if (sending.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                do {
+                    try {
+                        sendPending();
+                    } finally {
+                        sending.set(false);
+                    }
+                } while (hasWork() && sending.compareAndSet(false, true));
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the emitter already completed
+                log.debug("Closing presence stream: {}", e.getMessage());
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+            } catch (Exception e) {
+                log.error("Error sending presence stream event: {}", e.getMessage());
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+
+        private void sendPending() throws IOException {
+            if (resync) {
+                // Cleared first, so deltas arriving while the snapshot is read are kept
+                resync = false;
+                pending.clear();
+                List<UserDTO> online = userService.findOnlineUsers().stream()
+                        .map(userService::toDTO)
+                        .toList();
+                emitter.send(SseEmitter.event().name("snapshot").data(online));
+            }
+
+            if (!pending.isEmpty()) {
+                List<PresenceChange> changes = new ArrayList<>(pending.size());
+                for (Integer userId : pending.keySet()) {
+                    PresenceChange change = pending.remove(userId);
+                    if (change != null) {
+                        changes.add(change);
+                    }
+                }
+                if (!changes.isEmpty()) {
+                    emitter.send(SseEmitter.event().name("presence").data(changes));
+                }
+            }
+
+            if (ping) {
+                ping = false;
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+            }
+        }
+
+        private boolean hasWork() {
+            return resync || ping || !pending.isEmpty();
+        }
+    }
+}
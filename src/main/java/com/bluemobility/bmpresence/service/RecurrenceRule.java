@@ -0,0 +1,476 @@
+package com.bluemobility.bmpresence.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * Parsed RFC 5545 recurrence rule (the RRULE subset used by the scheduler
+ * frontend): FREQ (DAILY, WEEKLY, MONTHLY, YEARLY), INTERVAL, COUNT, UNTIL,
+ * BYDAY (with ordinals for MONTHLY and YEARLY), BYMONTHDAY, BYMONTH and
+ * BYSETPOS. Weeks start on Monday and UNTIL is read as local time. WKST is
+ * accepted where it does not change the occurrences; any other part, such as
+ * BYWEEKNO or BYHOUR, is rejected rather than ignored.
+ *
+ * <p>Occurrences are generated lazily, one period at a time, so a series
+ * without COUNT or UNTIL is never materialized.
+ */
+public final class RecurrenceRule {
+
+    public enum Frequency {
+        DAILY, WEEKLY, MONTHLY, YEARLY
+    }
+
+    /**
+     * Stop after this many consecutive periods without an occurrence, so a
+     * rule that can never match (e.g. BYMONTH=2;BYMONTHDAY=30) terminates.
+     */
+    private static final int MAX_EMPTY_PERIODS = 1_000;
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final List<Integer> ALL_MONTHS = List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+
+    private final Frequency frequency;
+    private final int interval;
+    private final Integer count;
+    private final LocalDateTime until;
+    private final List<WeekdayNum> byDay;
+    private final List<Integer> byMonthDay;
+    private final List<Integer> byMonth;
+    private final List<Integer> bySetPos;
+
+    private RecurrenceRule(Frequency frequency, int interval, Integer count, LocalDateTime until,
+            List<WeekdayNum> byDay, List<Integer> byMonthDay, List<Integer> byMonth, List<Integer> bySetPos) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.count = count;
+        this.until = until;
+        this.byDay = byDay;
+        this.byMonthDay = byMonthDay;
+        this.byMonth = byMonth;
+        this.bySetPos = bySetPos;
+    }
+
+    public static boolean isRecurring(String rule) {
+        return rule != null && !rule.isBlank();
+    }
+
+    /**
+     * Parses a rule such as {@code FREQ=WEEKLY;INTERVAL=1;BYDAY=MO,WE;COUNT=10}.
+     *
+     * @throws IllegalArgumentException if the rule is malformed or uses an
+     *                                  unsupported frequency
+     */
+    public static RecurrenceRule parse(String rule) {
+        if (!isRecurring(rule)) {
+            throw new IllegalArgumentException("Empty recurrence rule");
+        }
+
+        String value = rule.trim();
+        if (value.regionMatches(true, 0, "RRULE:", 0, 6)) {
+            value = value.substring(6);
+        }
+
+        Frequency frequency = null;
+        int interval = 1;
+        Integer count = null;
+        LocalDateTime until = null;
+        List<WeekdayNum> byDay = List.of();
+        List<Integer> byMonthDay = List.of();
+        List<Integer> byMonth = List.of();
+        List<Integer> bySetPos = List.of();
+        DayOfWeek weekStart = DayOfWeek.MONDAY;
+
+        for (String part : value.split(";")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            int separator = part.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid recurrence rule part: " + part);
+            }
+            String name = part.substring(0, separator).trim().toUpperCase(Locale.ROOT);
+            String partValue = part.substring(separator + 1).trim();
+
+            try {
+                switch (name) {
+                    case "FREQ" -> frequency = Frequency.valueOf(partValue.toUpperCase(Locale.ROOT));
+                    case "INTERVAL" -> interval = Integer.parseInt(partValue);
+                    case "COUNT" -> count = Integer.parseInt(partValue);
+                    case "UNTIL" -> until = parseUntil(partValue);
+                    case "BYDAY" -> byDay = parseList(partValue).stream().map(WeekdayNum::parse).toList();
+                    case "BYMONTHDAY" -> byMonthDay = parseIntegers(partValue, 31);
+                    case "BYMONTH" -> byMonth = parseIntegers(partValue, 12);
+                    case "BYSETPOS" -> bySetPos = parseIntegers(partValue, 366);
+                    case "WKST" -> weekStart = WeekdayNum.parse(partValue).dayOfWeek();
+                    default -> throw new IllegalArgumentException("Unsupported recurrence rule part: " + name);
+                }
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid recurrence rule part: " + part, e);
+            }
+        }
+
+        if (frequency == null) {
+            throw new IllegalArgumentException("Recurrence rule without FREQ: " + rule);
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("INTERVAL must be positive: " + rule);
+        }
+        if (count != null && count < 0) {
+            throw new IllegalArgumentException("COUNT must not be negative: " + rule);
+        }
+        if (byMonth.stream().anyMatch(month -> month < 1)) {
+            throw new IllegalArgumentException("BYMONTH must be between 1 and 12: " + rule);
+        }
+        // Ordinals count within the month, or within the year for YEARLY rules without BYMONTH
+        int maxOrdinal = switch (frequency) {
+            case DAILY, WEEKLY -> 0;
+            case MONTHLY -> 5;
+            case YEARLY -> byMonth.isEmpty() ? 53 : 5;
+        };
+        if (byDay.stream().anyMatch(day -> Math.abs(day.ordinal()) > maxOrdinal)) {
+            throw new IllegalArgumentException("Invalid BYDAY ordinal for FREQ=" + frequency + ": " + rule);
+        }
+        // Weeks are only numbered from WKST when weekly periods are skipped
+        if (weekStart != DayOfWeek.MONDAY && frequency == Frequency.WEEKLY && interval > 1 && !byDay.isEmpty()) {
+            throw new IllegalArgumentException("Only WKST=MO is supported: " + rule);
+        }
+
+        return new RecurrenceRule(frequency, interval, count, until, byDay, byMonthDay, byMonth, bySetPos);
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public LocalDateTime getUntil() {
+        return until;
+    }
+
+    public boolean isBounded() {
+        return count != null || until != null;
+    }
+
+    /**
+     * Returns the occurrence start times of a series starting at
+     * {@code dtStart}, in order.
+     */
+    public Iterator<LocalDateTime> iterator(LocalDateTime dtStart) {
+        return new OccurrenceIterator(dtStart, 0);
+    }
+
+    /**
+     * Like {@link #iterator(LocalDateTime)}, but may skip whole periods that
+     * end before {@code notBefore}. Occurrences before {@code notBefore} can
+     * still be returned. Periods are only skipped when the rule has no COUNT,
+     * since COUNT requires walking the series from the start.
+     */
+    public Iterator<LocalDateTime> iterator(LocalDateTime dtStart, LocalDateTime notBefore) {
+        if (count != null || notBefore == null || !notBefore.isAfter(dtStart)) {
+            return new OccurrenceIterator(dtStart, 0);
+        }
+
+        LocalDate origin = periodStart(dtStart.toLocalDate());
+        long units = switch (frequency) {
+            case DAILY -> ChronoUnit.DAYS.between(origin, notBefore.toLocalDate());
+            case WEEKLY -> ChronoUnit.WEEKS.between(origin, notBefore.toLocalDate());
+            case MONTHLY -> ChronoUnit.MONTHS.between(origin, notBefore.toLocalDate());
+            case YEARLY -> ChronoUnit.YEARS.between(origin, notBefore.toLocalDate());
+        };
+        // Step back one period so occurrences straddling notBefore are kept
+        long firstPeriod = Math.max(0, units / interval - 1);
+        return new OccurrenceIterator(dtStart, firstPeriod);
+    }
+
+    private LocalDate periodStart(LocalDate date) {
+        return switch (frequency) {
+            case DAILY -> date;
+            case WEEKLY -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTHLY -> date.withDayOfMonth(1);
+            case YEARLY -> date.withDayOfYear(1);
+        };
+    }
+
+    private LocalDate periodStart(LocalDate origin, long period) {
+        long amount = period * interval;
+        return switch (frequency) {
+            case DAILY -> origin.plusDays(amount);
+            case WEEKLY -> origin.plusWeeks(amount);
+            case MONTHLY -> origin.plusMonths(amount);
+            case YEARLY -> origin.plusYears(amount);
+        };
+    }
+
+    /**
+     * Candidate dates of one period, sorted, before DTSTART/COUNT/UNTIL.
+     */
+    private List<LocalDate> candidates(LocalDate periodStart, LocalDate dtStart) {
+        List<LocalDate> dates = new ArrayList<>();
+        switch (frequency) {
+            case DAILY -> {
+                if (matchesFilters(periodStart)) {
+                    dates.add(periodStart);
+                }
+            }
+            case WEEKLY -> {
+                TreeSet<LocalDate> days = new TreeSet<>();
+                if (byDay.isEmpty()) {
+                    days.add(periodStart.with(TemporalAdjusters.nextOrSame(dtStart.getDayOfWeek())));
+                } else {
+                    byDay.forEach(day -> days.add(periodStart.with(TemporalAdjusters.nextOrSame(day.dayOfWeek()))));
+                }
+                days.stream().filter(this::matchesMonth).forEach(dates::add);
+            }
+            case MONTHLY -> {
+                if (matchesMonth(periodStart)) {
+                    dates.addAll(monthCandidates(YearMonth.from(periodStart), dtStart));
+                }
+            }
+            case YEARLY -> {
+                if (byMonth.isEmpty() && byMonthDay.isEmpty() && !byDay.isEmpty()) {
+                    dates.addAll(yearCandidates(periodStart.getYear()));
+                } else {
+                    // BYMONTHDAY alone repeats in every month, like BYMONTH=1,...,12
+                    List<Integer> months = !byMonth.isEmpty() ? byMonth
+                            : !byMonthDay.isEmpty() ? ALL_MONTHS
+                            : List.of(dtStart.getMonthValue());
+                    months.stream().sorted().distinct().forEach(month -> dates.addAll(
+                            monthCandidates(YearMonth.of(periodStart.getYear(), month), dtStart)));
+                }
+            }
+        }
+        return applySetPos(dates);
+    }
+
+    private List<LocalDate> monthCandidates(YearMonth month, LocalDate dtStart) {
+        TreeSet<LocalDate> days = new TreeSet<>();
+        if (!byMonthDay.isEmpty()) {
+            for (Integer monthDay : byMonthDay) {
+                int day = monthDay > 0 ? monthDay : month.lengthOfMonth() + monthDay + 1;
+                if (day >= 1 && day <= month.lengthOfMonth()) {
+                    LocalDate date = month.atDay(day);
+                    if (byDay.isEmpty() || byDay.stream().anyMatch(d -> d.dayOfWeek() == date.getDayOfWeek())) {
+                        days.add(date);
+                    }
+                }
+            }
+        } else if (!byDay.isEmpty()) {
+            for (WeekdayNum weekday : byDay) {
+                if (weekday.ordinal() == 0) {
+                    LocalDate date = month.atDay(1).with(TemporalAdjusters.nextOrSame(weekday.dayOfWeek()));
+                    while (date.getMonthValue() == month.getMonthValue()) {
+                        days.add(date);
+                        date = date.plusWeeks(1);
+                    }
+                } else {
+                    LocalDate date = month.atDay(1)
+                            .with(TemporalAdjusters.dayOfWeekInMonth(weekday.ordinal(), weekday.dayOfWeek()));
+                    if (YearMonth.from(date).equals(month)) {
+                        days.add(date);
+                    }
+                }
+            }
+        } else if (dtStart.getDayOfMonth() <= month.lengthOfMonth()) {
+            days.add(month.atDay(dtStart.getDayOfMonth()));
+        }
+        return new ArrayList<>(days);
+    }
+
+    /**
+     * BYDAY of a YEARLY rule without BYMONTH: every matching weekday of the
+     * year, or the nth one counted from the start or end of the year.
+     */
+    private List<LocalDate> yearCandidates(int year) {
+        TreeSet<LocalDate> days = new TreeSet<>();
+        LocalDate firstDay = LocalDate.ofYearDay(year, 1);
+        LocalDate lastDay = firstDay.with(TemporalAdjusters.lastDayOfYear());
+        for (WeekdayNum weekday : byDay) {
+            LocalDate first = firstDay.with(TemporalAdjusters.nextOrSame(weekday.dayOfWeek()));
+            if (weekday.ordinal() == 0) {
+                for (LocalDate date = first; date.getYear() == year; date = date.plusWeeks(1)) {
+                    days.add(date);
+                }
+            } else {
+                LocalDate date = weekday.ordinal() > 0
+                        ? first.plusWeeks(weekday.ordinal() - 1)
+                        : lastDay.with(TemporalAdjusters.previousOrSame(weekday.dayOfWeek()))
+                                .plusWeeks(weekday.ordinal() + 1);
+                if (date.getYear() == year) {
+                    days.add(date);
+                }
+            }
+        }
+        return new ArrayList<>(days);
+    }
+
+    private List<LocalDate> applySetPos(List<LocalDate> dates) {
+        if (bySetPos.isEmpty() || dates.isEmpty()) {
+            return dates;
+        }
+        TreeSet<LocalDate> selected = new TreeSet<>();
+        for (Integer position : bySetPos) {
+            int index = position > 0 ? position - 1 : dates.size() + position;
+            if (index >= 0 && index < dates.size()) {
+                selected.add(dates.get(index));
+            }
+        }
+        return new ArrayList<>(selected);
+    }
+
+    private boolean matchesFilters(LocalDate date) {
+        if (!matchesMonth(date)) {
+            return false;
+        }
+        if (!byMonthDay.isEmpty()) {
+            int length = date.lengthOfMonth();
+            boolean matches = byMonthDay.stream().anyMatch(day -> day > 0
+                    ? day == date.getDayOfMonth()
+                    : length + day + 1 == date.getDayOfMonth());
+            if (!matches) {
+                return false;
+            }
+        }
+        return byDay.isEmpty() || byDay.stream().anyMatch(day -> day.dayOfWeek() == date.getDayOfWeek());
+    }
+
+    private boolean matchesMonth(LocalDate date) {
+        return byMonth.isEmpty() || byMonth.contains(date.getMonthValue());
+    }
+
+    private static LocalDateTime parseUntil(String value) {
+        String normalized = value.endsWith("Z") || value.endsWith("z") ? value.substring(0, value.length() - 1) : value;
+        if (normalized.length() == 8) {
+            // A date-only UNTIL includes the whole day
+            return LocalDate.parse(normalized, DATE).atTime(LocalTime.MAX);
+        }
+        return LocalDateTime.parse(normalized, DATE_TIME);
+    }
+
+    private static List<String> parseList(String value) {
+        return List.of(value.split(",")).stream().map(String::trim).filter(v -> !v.isEmpty()).toList();
+    }
+
+    private static List<Integer> parseIntegers(String value, int maxAbsolute) {
+        List<Integer> values = parseList(value).stream().map(Integer::parseInt).toList();
+        if (values.stream().anyMatch(v -> v == 0 || Math.abs(v) > maxAbsolute)) {
+            throw new IllegalArgumentException("Value out of range: " + value);
+        }
+        return values;
+    }
+
+    private record WeekdayNum(int ordinal, DayOfWeek dayOfWeek) {
+
+        static WeekdayNum parse(String value) {
+            String upper = value.toUpperCase(Locale.ROOT);
+            if (upper.length() < 2) {
+                throw new IllegalArgumentException("Invalid BYDAY value: " + value);
+            }
+            String code = upper.substring(upper.length() - 2);
+            String ordinal = upper.substring(0, upper.length() - 2);
+            DayOfWeek dayOfWeek = switch (code) {
+                case "MO" -> DayOfWeek.MONDAY;
+                case "TU" -> DayOfWeek.TUESDAY;
+                case "WE" -> DayOfWeek.WEDNESDAY;
+                case "TH" -> DayOfWeek.THURSDAY;
+                case "FR" -> DayOfWeek.FRIDAY;
+                case "SA" -> DayOfWeek.SATURDAY;
+                case "SU" -> DayOfWeek.SUNDAY;
+                default -> throw new IllegalArgumentException("Invalid BYDAY value: " + value);
+            };
+            int number = ordinal.isEmpty() || ordinal.equals("+") ? 0 : Integer.parseInt(ordinal.replace("+", ""));
+            if (Math.abs(number) > 53) {
+                throw new IllegalArgumentException("Invalid BYDAY ordinal: " + value);
+            }
+            return new WeekdayNum(number, dayOfWeek);
+        }
+    }
+
+    private final class OccurrenceIterator implements Iterator<LocalDateTime> {
+
+        private final LocalDateTime dtStart;
+        private final LocalDate origin;
+        private long period;
+        private int emitted;
+        private Iterator<LocalDate> currentPeriod = List.<LocalDate>of().iterator();
+        private LocalDateTime next;
+        private boolean finished;
+
+        private OccurrenceIterator(LocalDateTime dtStart, long firstPeriod) {
+            this.dtStart = dtStart;
+            this.origin = periodStart(dtStart.toLocalDate());
+            this.period = firstPeriod;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                next = advance();
+                finished = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public LocalDateTime next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            LocalDateTime result = next;
+            next = null;
+            emitted++;
+            return result;
+        }
+
+        private LocalDateTime advance() {
+            if (count != null && emitted >= count) {
+                return null;
+            }
+
+            int emptyPeriods = 0;
+            while (emptyPeriods < MAX_EMPTY_PERIODS) {
+                while (currentPeriod.hasNext()) {
+                    LocalDateTime candidate = currentPeriod.next().atTime(dtStart.toLocalTime());
+                    if (candidate.isBefore(dtStart)) {
+                        continue;
+                    }
+                    if (until != null && candidate.isAfter(until)) {
+                        return null;
+                    }
+                    return candidate;
+                }
+
+                LocalDate periodStart = periodStart(origin, period++);
+                if (until != null && periodStart.isAfter(until.toLocalDate())) {
+                    return null;
+                }
+
+                List<LocalDate> dates = candidates(periodStart, dtStart.toLocalDate());
+                if (dates.isEmpty()) {
+                    emptyPeriods++;
+                } else {
+                    emptyPeriods = 0;
+                    currentPeriod = dates.iterator();
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.AppointmentProperties;
+import com.bluemobility.bmpresence.dto.AppointmentOccurrence;
+import com.bluemobility.bmpresence.model.PresenceAppointment;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Expands appointments into their occurrences for a time window. Recurring
+ * series are expanded lazily with {@link RecurrenceRule}, and the expansion of
+ * a saved appointment for a given window is kept in a cache bounded by the
+ * total number of occurrences it holds.
+ */
+@Service
+@Slf4j
+public class RecurrenceService {
+
+    private final AppointmentProperties appointmentProperties;
+    private final Cache<OccurrenceKey, List<AppointmentOccurrence>> cache;
+
+    public RecurrenceService(AppointmentProperties appointmentProperties) {
+        this.appointmentProperties = appointmentProperties;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(appointmentProperties.getRecurrence().getCacheMaxOccurrences())
+                .weigher((OccurrenceKey key, List<AppointmentOccurrence> occurrences) -> Math.max(1, occurrences.size()))
+                .recordStats()
+                .build();
+    }
+
+    public boolean isRecurring(PresenceAppointment appointment) {
+        return RecurrenceRule.isRecurring(appointment.getRecurrenceRule());
+    }
+
+    /**
+     * Checks that the rule, if any, is one {@link RecurrenceRule} can expand.
+     *
+     * @throws IllegalArgumentException if it is not
+     */
+    public void validate(String recurrenceRule) {
+        if (!RecurrenceRule.isRecurring(recurrenceRule)) {
+            return;
+        }
+        try {
+            RecurrenceRule.parse(recurrenceRule);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Regola di ricorrenza non valida: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the latest time an occurrence of the series can end, or
+     * {@code null} if it is not recurring, has no COUNT or UNTIL, or has more
+     * occurrences than {@code appointments.recurrence.max-occurrences}.
+     * Range queries skip series that ended before the range.
+     */
+    public LocalDateTime seriesEnd(PresenceAppointment appointment) {
+        RecurrenceRule rule = parse(appointment.getRecurrenceRule());
+        if (rule == null || !rule.isBounded()) {
+            return null;
+        }
+
+        Duration duration = Duration.between(appointment.getStartTime(), appointment.getEndTime());
+        if (rule.getCount() == null) {
+            // No occurrence starts after UNTIL
+            return rule.getUntil().plus(duration);
+        }
+        if (rule.getCount() > appointmentProperties.getRecurrence().getMaxOccurrences()) {
+            return null;
+        }
+        LocalDateTime lastStart = appointment.getStartTime();
+        Iterator<LocalDateTime> starts = rule.iterator(appointment.getStartTime());
+        while (starts.hasNext()) {
+            lastStart = starts.next();
+        }
+        return lastStart.plus(duration);
+    }
+
+    /**
+     * Returns the occurrences of the appointment that overlap [from, to).
+     */
+    public List<AppointmentOccurrence> occurrences(PresenceAppointment appointment, LocalDateTime from,
+            LocalDateTime to) {
+        return occurrences(appointment.getId(), appointment.getRecurrenceRule(), appointment.getStartTime(),
+                appointment.getEndTime(), from, to);
+    }
+
+    /**
+     * Returns the occurrences of a series that overlap [from, to), at most
+     * {@code appointments.recurrence.max-occurrences}. Results for saved
+     * appointments are cached per window.
+     */
+    public List<AppointmentOccurrence> occurrences(Integer appointmentId, String recurrenceRule,
+            LocalDateTime startTime, LocalDateTime endTime, LocalDateTime from, LocalDateTime to) {
+        if (appointmentId == null || !RecurrenceRule.isRecurring(recurrenceRule)) {
+            return stream(recurrenceRule, startTime, endTime, from, to).toList();
+        }
+
+        OccurrenceKey key = new OccurrenceKey(appointmentId, recurrenceRule, startTime, endTime, from, to);
+        return cache.get(key, k -> stream(recurrenceRule, startTime, endTime, from, to).toList());
+    }
+
+    /**
+     * Occurrences of an appointment being booked: the appointment itself or,
+     * for a recurring series, every occurrence within
+     * {@code appointments.recurrence.conflict-horizon} of its start.
+     */
+    public List<AppointmentOccurrence> bookedOccurrences(PresenceAppointment appointment) {
+        AppointmentOccurrence first = new AppointmentOccurrence(appointment.getStartTime(), appointment.getEndTime());
+        if (!isRecurring(appointment)) {
+            return List.of(first);
+        }
+
+        LocalDateTime horizon = appointment.getStartTime()
+                .plus(appointmentProperties.getRecurrence().getConflictHorizon());
+        List<AppointmentOccurrence> occurrences = stream(appointment.getRecurrenceRule(), appointment.getStartTime(),
+                appointment.getEndTime(), appointment.getStartTime(), horizon).toList();
+        return occurrences.isEmpty() ? List.of(first) : occurrences;
+    }
+
+    /**
+     * Streams the occurrences of a series that overlap [from, to) without
+     * caching. Only the occurrences needed to reach {@code to} are generated.
+     */
+    public Stream<AppointmentOccurrence> stream(String recurrenceRule, LocalDateTime startTime,
+            LocalDateTime endTime, LocalDateTime from, LocalDateTime to) {
+        Duration duration = Duration.between(startTime, endTime);
+
+        RecurrenceRule rule = parse(recurrenceRule);
+        if (rule == null) {
+            AppointmentOccurrence single = new AppointmentOccurrence(startTime, endTime);
+            return overlaps(single, from, to) ? Stream.of(single) : Stream.empty();
+        }
+
+        Iterator<LocalDateTime> starts = rule.iterator(startTime, from.minus(duration));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(starts, Spliterator.ORDERED), false)
+                .takeWhile(start -> start.isBefore(to))
+                .map(start -> new AppointmentOccurrence(start, start.plus(duration)))
+                .filter(occurrence -> overlaps(occurrence, from, to))
+                .limit(appointmentProperties.getRecurrence().getMaxOccurrences());
+    }
+
+    /**
+     * Drops every cached expansion of the appointment.
+     */
+    public void evict(Integer appointmentId) {
+        cache.asMap().keySet().removeIf(key -> key.appointmentId().equals(appointmentId));
+    }
+
+    public void evictAfterCommit(Integer appointmentId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(appointmentId);
+                }
+            });
+        } else {
+            evict(appointmentId);
+        }
+    }
+
+    private RecurrenceRule parse(String recurrenceRule) {
+        if (!RecurrenceRule.isRecurring(recurrenceRule)) {
+            return null;
+        }
+        try {
+            return RecurrenceRule.parse(recurrenceRule);
+        } catch (IllegalArgumentException e) {
+            // Rejected on save; rules stored before that are treated as a single occurrence
+            log.warn("Unsupported recurrence rule '{}': {}", recurrenceRule, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean overlaps(AppointmentOccurrence occurrence, LocalDateTime from, LocalDateTime to) {
+        return occurrence.startTime().isBefore(to)
+                && (occurrence.endTime().isAfter(from) || !occurrence.startTime().isBefore(from));
+    }
+
+    private record OccurrenceKey(Integer appointmentId, String recurrenceRule, LocalDateTime startTime,
+            LocalDateTime endTime, LocalDateTime from, LocalDateTime to) {
+    }
+}
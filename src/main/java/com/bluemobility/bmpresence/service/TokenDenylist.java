@@ -0,0 +1,147 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.JwtConfigProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory set of revoked token IDs, checked on every authenticated request.
+ *
+ * <p>Nearly every token checked is not revoked, so a Bloom filter sits in
+ * front of the exact set: a miss in the filter answers without touching the
+ * map, hashing the ID in place without allocating. Only IDs that pass the
+ * filter, revoked or false positive, are looked up in the map.
+ *
+ * <p>Each ID is kept until its token expires. A Bloom filter cannot remove
+ * entries, so {@link #purgeExpired} rebuilds it from the remaining IDs, sized
+ * for at least {@code jwt.revocation.expected-entries}. Reads never lock;
+ * additions and rebuilds are serialized so none is lost in a rebuild.
+ */
+@Component
+public class TokenDenylist {
+
+    private final int expectedEntries;
+    private final double falsePositiveRate;
+
+    /** Token ID to expiration in epoch milliseconds */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile BloomFilter filter;
+
+    public TokenDenylist(JwtConfigProperties jwtConfig) {
+        this.expectedEntries = Math.max(1, jwtConfig.getRevocation().getExpectedEntries());
+        this.falsePositiveRate = jwtConfig.getRevocation().getFalsePositiveRate();
+        this.filter = BloomFilter.create(expectedEntries, falsePositiveRate);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null) {
+            return false;
+        }
+        return filter.mightContain(tokenId) && revoked.containsKey(tokenId);
+    }
+
+    public void add(String tokenId, long expiresAtMillis) {
+        writeLock.lock();
+        try {
+            revoked.merge(tokenId, expiresAtMillis, Math::max);
+            filter.put(tokenId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the IDs of tokens that expired before {@code nowMillis} and
+     * rebuilds the filter. Returns the number of IDs dropped.
+     */
+    public int purgeExpired(long nowMillis) {
+        writeLock.lock();
+        try {
+            int before = revoked.size();
+            revoked.values().removeIf(expiresAt -> expiresAt < nowMillis);
+
+            BloomFilter rebuilt = BloomFilter.create(Math.max(expectedEntries, revoked.size() * 2),
+                    falsePositiveRate);
+            revoked.keySet().forEach(rebuilt::put);
+            filter = rebuilt;
+            return before - revoked.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    /**
+     * Bloom filter over strings with {@code hashes} probes per ID, derived by
+     * double hashing from one 64-bit hash.
+     */
+    private static final class BloomFilter {
+
+        private final AtomicLongArray words;
+        private final long bitMask;
+        private final int hashes;
+
+        private BloomFilter(int bits, int hashes) {
+            this.words = new AtomicLongArray(Math.max(1, bits >>> 6));
+            this.bitMask = bits - 1L;
+            this.hashes = hashes;
+        }
+
+        static BloomFilter create(int expectedEntries, double falsePositiveRate) {
+            double ln2 = Math.log(2);
+            double optimalBits = -expectedEntries * Math.log(falsePositiveRate) / (ln2 * ln2);
+            // Power of two so a probe is a mask rather than a division
+            int bits = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(64, Math.ceil(optimalBits))) - 1) << 1;
+            int hashes = Math.max(1, (int) Math.round((double) bits / expectedEntries * ln2));
+            return new BloomFilter(bits, Math.min(hashes, 16));
+        }
+
+        boolean mightContain(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                long bit = (h1 + (long) i * h2) & bitMask;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Callers hold the write lock, so a plain read-modify-write is enough */
+        void put(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                long bit = (h1 + (long) i * h2) & bitMask;
+                int word = (int) (bit >>> 6);
+                words.set(word, words.get(word) | (1L << bit));
+            }
+        }
+
+        /** FNV-1a over the UTF-16 chars, finished with the MurmurHash3 mixer */
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
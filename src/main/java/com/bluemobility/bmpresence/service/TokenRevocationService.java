@@ -0,0 +1,129 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.JwtConfigProperties;
+import com.bluemobility.bmpresence.model.RevokedToken;
+import com.bluemobility.bmpresence.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Revokes tokens before their expiration and keeps the {@link TokenDenylist}
+ * in sync with the {@code RevokedTokens} table.
+ *
+ * <p>A revocation takes effect on this instance immediately and is stored so
+ * that it survives restarts. Other instances pick it up within
+ * {@code jwt.revocation.sync-interval}. Revocations of expired tokens are
+ * dropped every {@code jwt.revocation.purge-interval}, since the token is
+ * rejected as expired from then on.
+ *
+ * <p>Revocations are read in read-write transactions, which always run on the
+ * primary, so a lagging read replica cannot delay them further.
+ */
+@Service
+@Slf4j
+public class TokenRevocationService {
+
+    private final TokenDenylist denylist;
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JwtConfigProperties.Revocation settings;
+
+    private volatile LocalDateTime lastSync;
+
+    public TokenRevocationService(TokenDenylist denylist, RevokedTokenRepository revokedTokenRepository,
+            TransactionTemplate transactionTemplate, JwtConfigProperties jwtConfig, MeterRegistry meterRegistry) {
+        this.denylist = denylist;
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.settings = jwtConfig.getRevocation();
+
+        Gauge.builder("jwt.revocation.entries", denylist, TokenDenylist::size)
+                .description("Revoked tokens that have not expired yet")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Revokes the token until its expiration. Tokens issued without an ID
+     * cannot be revoked and are left to expire.
+     */
+    public void revoke(TokenService.VerifiedToken token) {
+        if (token.tokenId() == null || token.expiration() == null) {
+            log.warn("Token of user ID {} has no ID and cannot be revoked", token.userId());
+            return;
+        }
+
+        denylist.add(token.tokenId(), token.expiration().getTime());
+        try {
+            revokedTokenRepository.save(new RevokedToken(
+                    token.tokenId(),
+                    token.userId(),
+                    LocalDateTime.ofInstant(token.expiration().toInstant(), ZoneId.systemDefault()),
+                    LocalDateTime.now()));
+        } catch (Exception e) {
+            // Still revoked on this instance until restart
+            log.error("Error storing revoked token of user ID {}: {}", token.userId(), e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            List<RevokedToken> revokedTokens = transactionTemplate.execute(
+                    status -> revokedTokenRepository.findByExpiresAtAfter(now));
+            revokedTokens.forEach(this::addToDenylist);
+            lastSync = now;
+            log.info("Token denylist loaded with {} revoked tokens", revokedTokens.size());
+        } catch (Exception e) {
+            log.error("Error loading revoked tokens: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the revocations stored by other instances since the last sync.
+     * The window overlaps the previous one by a sync interval to tolerate
+     * clock differences between instances; re-adding a token is harmless.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval:30s}")
+    public void sync() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = lastSync;
+        try {
+            List<RevokedToken> revokedTokens = transactionTemplate.execute(status -> since == null
+                    ? revokedTokenRepository.findByExpiresAtAfter(now)
+                    : revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(
+                            since.minus(settings.getSyncInterval()), now));
+            revokedTokens.forEach(this::addToDenylist);
+            lastSync = now;
+        } catch (Exception e) {
+            log.warn("Error syncing revoked tokens: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval:1h}")
+    public void purge() {
+        int dropped = denylist.purgeExpired(System.currentTimeMillis());
+        try {
+            Integer deleted = transactionTemplate.execute(
+                    status -> revokedTokenRepository.deleteExpired(LocalDateTime.now()));
+            log.debug("Purged {} expired revocations from memory and {} from the database", dropped, deleted);
+        } catch (Exception e) {
+            log.warn("Error purging expired revoked tokens: {}", e.getMessage());
+        }
+    }
+
+    private void addToDenylist(RevokedToken revokedToken) {
+        denylist.add(revokedToken.getTokenId(),
+                revokedToken.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+}
@@ -3,6 +3,7 @@ package com.bluemobility.bmpresence.service;
 import com.bluemobility.bmpresence.config.JwtConfigProperties;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -13,23 +14,44 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
 
 @Service
+@Timed("service.invocations")
 @Slf4j
 @RequiredArgsConstructor
 public class TokenService {
 
     private final JwtConfigProperties jwtConfig;
+    private final TokenDenylist tokenDenylist;
+
+    /**
+     * Signing key and parser derived from the configured secret. Both are
+     * immutable and thread-safe, so they are built once and only rebuilt when
+     * {@code jwt.secret} changes.
+     */
+    private volatile SigningMaterial signingMaterial;
+
+    private SigningMaterial getSigningMaterial() {
+        String secret = jwtConfig.getSecret();
+        SigningMaterial current = signingMaterial;
+        if (current == null || !current.secret().equals(secret)) {
+            SecretKey key = decodeSigningKey(secret);
+            current = new SigningMaterial(secret, key, Jwts.parser().verifyWith(key).build());
+            signingMaterial = current;
+        }
+        return current;
+    }
 
-    private SecretKey getSigningKey() {
+    private SecretKey decodeSigningKey(String secret) {
         byte[] keyBytes;
         try {
             // Try to decode as Base64 first (if the key is in Base64)
-            keyBytes = Base64.getDecoder().decode(jwtConfig.getSecret());
+            keyBytes = Base64.getDecoder().decode(secret);
             log.debug("JWT secret decoded from Base64 ({} bytes)", keyBytes.length);
         } catch (IllegalArgumentException e) {
             // If not Base64, use as plain text
-            keyBytes = jwtConfig.getSecret().getBytes(StandardCharsets.UTF_8);
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
             log.debug("JWT secret used as plain text ({} bytes)", keyBytes.length);
         }
         return Keys.hmacShaKeyFor(keyBytes);
@@ -40,59 +62,62 @@ public class TokenService {
         Instant expiration = now.plus(jwtConfig.getExpiration().getDays(), ChronoUnit.DAYS);
 
         String token = Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(userId.toString())
                 .issuedAt(Date.from(now))
                 .expiration(Date.from(expiration))
-                .signWith(getSigningKey())
+                .signWith(getSigningMaterial().key())
                 .compact();
 
         log.info("Token generated successfully for user ID: {}", userId);
         return token;
     }
 
-    public boolean isTokenValid(String token) {
+    /**
+     * Verifies the signature, expiration and revocation of the token and
+     * returns its claims, or {@code null} if the token is not valid. Callers that need
+     * several claims should verify once and reuse the result.
+     */
+    public VerifiedToken verify(String token) {
         try {
             if (token == null || token.isEmpty()) {
                 log.info("Token not found or empty");
-                return false;
+                return null;
             }
 
-            Claims claims = Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
+            Claims claims = getSigningMaterial().parser()
                     .parseSignedClaims(token)
                     .getPayload();
 
-            Date expiration = claims.getExpiration();
-            boolean isValid = expiration.after(new Date());
-
-            if (!isValid) {
-                log.info("Token expired. Expiration date: {}", expiration);
+            if (tokenDenylist.isRevoked(claims.getId())) {
+                log.info("Token revoked for user ID: {}", claims.getSubject());
+                return null;
             }
 
-            return isValid;
+            return new VerifiedToken(
+                    claims.getId(),
+                    Integer.parseInt(claims.getSubject()),
+                    claims.getIssuedAt(),
+                    claims.getExpiration());
         } catch (ExpiredJwtException e) {
             log.info("Token expired: {}", e.getMessage());
-            return false;
+            return null;
         } catch (JwtException e) {
             log.error("Error validating token: {}", e.getMessage());
-            return false;
+            return null;
+        } catch (NumberFormatException e) {
+            log.error("Token subject is not a valid user ID: {}", e.getMessage());
+            return null;
         }
     }
 
-    public Integer getUserIdFromToken(String token) {
-        try {
-            Claims claims = Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+    public boolean isTokenValid(String token) {
+        return verify(token) != null;
+    }
 
-            return Integer.parseInt(claims.getSubject());
-        } catch (JwtException e) {
-            log.error("Error getting user ID from token: {}", e.getMessage());
-            return null;
-        }
+    public Integer getUserIdFromToken(String token) {
+        VerifiedToken verifiedToken = verify(token);
+        return verifiedToken != null ? verifiedToken.userId() : null;
     }
 
     public String renewToken(String oldToken) {
@@ -107,16 +132,16 @@ public class TokenService {
             // No point in renewing a token that has not yet expired
             Integer userId;
             Date expirationDate;
+            String tokenId;
             boolean isExpired = false;
 
             try {
-                Claims claims = Jwts.parser()
-                        .verifyWith(getSigningKey())
-                        .build()
+                Claims claims = getSigningMaterial().parser()
                         .parseSignedClaims(oldToken)
                         .getPayload();
                 userId = Integer.parseInt(claims.getSubject());
                 expirationDate = claims.getExpiration();
+                tokenId = claims.getId();
 
                 // Calculate remaining time until expiration
                 long timeUntilExpiration = expirationDate.getTime() - System.currentTimeMillis();
@@ -135,10 +160,16 @@ public class TokenService {
             } catch (ExpiredJwtException e) {
                 // If the token is expired, we can still get the userId from the claims
                 userId = Integer.parseInt(e.getClaims().getSubject());
+                tokenId = e.getClaims().getId();
                 isExpired = true;
                 log.info("Renewing expired token for user ID: {}", userId);
             }
 
+            if (tokenDenylist.isRevoked(tokenId)) {
+                log.warn("Attempt to renew revoked token. User ID: {}", userId);
+                return null;
+            }
+
             String newToken = generateToken(userId);
             log.info("Token renewed successfully for user ID: {} (previous token was {})",
                     userId, isExpired ? "expired" : "expiring soon");
@@ -153,17 +184,17 @@ public class TokenService {
     }
 
     public Date getExpirationDate(String token) {
-        try {
-            Claims claims = Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+        VerifiedToken verifiedToken = verify(token);
+        return verifiedToken != null ? verifiedToken.expiration() : null;
+    }
 
-            return claims.getExpiration();
-        } catch (JwtException e) {
-            log.error("Error getting token expiration date: {}", e.getMessage());
-            return null;
-        }
+    private record SigningMaterial(String secret, SecretKey key, JwtParser parser) {
+    }
+
+    /**
+     * Claims of a token whose signature and expiration have been verified.
+     * {@code tokenId} is {@code null} for tokens issued before tokens had IDs.
+     */
+    public record VerifiedToken(String tokenId, Integer userId, Date issuedAt, Date expiration) {
     }
 }
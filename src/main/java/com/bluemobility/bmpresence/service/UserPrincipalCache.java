@@ -0,0 +1,69 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.AuthProperties;
+import com.bluemobility.bmpresence.dto.UserPrincipal;
+import com.bluemobility.bmpresence.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+/**
+ * Cache of {@link UserPrincipal} snapshots keyed by user ID, so the
+ * authentication filter does not load the full user row on every request.
+ * Every write that can change a user's access must call {@link #invalidate}.
+ */
+@Service
+public class UserPrincipalCache {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<Integer, Optional<UserPrincipal>> cache;
+
+    public UserPrincipalCache(UserRepository userRepository, TransactionTemplate transactionTemplate,
+            AuthProperties authProperties, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(authProperties.getPrincipalCache().getMaxSize())
+                .expireAfterWrite(authProperties.getPrincipalCache().getTtl())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth.principals");
+    }
+
+    /**
+     * Returns the principal for the user, or {@code null} if it does not exist.
+     * It is loaded in a read-write transaction, which always runs on the
+     * primary: a lagging read replica could cache again a user who was just
+     * deactivated or demoted.
+     */
+    public UserPrincipal get(Integer userId) {
+        return cache.get(userId, id -> transactionTemplate.execute(status -> userRepository.findPrincipalById(id)))
+                .orElse(null);
+    }
+
+    /**
+     * Drops the cached principal now and, if a transaction is active, again
+     * after it commits so a concurrent reload cannot cache pre-commit state.
+     */
+    public void invalidate(Integer userId) {
+        cache.invalidate(userId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(userId);
+                }
+            });
+        }
+    }
+}
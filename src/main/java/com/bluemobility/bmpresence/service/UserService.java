@@ -1,18 +1,29 @@
 package com.bluemobility.bmpresence.service;
 
+import com.bluemobility.bmpresence.dto.UserDTO;
 import com.bluemobility.bmpresence.model.User;
 import com.bluemobility.bmpresence.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
+@Timed("service.invocations")
 @RequiredArgsConstructor
 public class UserService {
 
     private final UserRepository userRepository;
+    private final UserPrincipalCache userPrincipalCache;
+    private final PresenceBuffer presenceBuffer;
+    private final PresenceRegistry presenceRegistry;
+    private final CollectionVersions collectionVersions;
 
     public List<User> findAll() {
         return userRepository.findAll();
@@ -32,12 +43,42 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("Utente non trovato con email: " + email));
     }
 
+    /**
+     * Returns the users that are online, from the database column shared by
+     * all instances, taking into account status changes still waiting in the
+     * presence buffer.
+     */
     public List<User> findOnlineUsers() {
-        return userRepository.findByIsOnlineTrue();
+        Map<Integer, PresenceBuffer.PresenceState> buffered = presenceBuffer.snapshot();
+        List<User> online = new ArrayList<>();
+        for (User user : userRepository.findByIsOnlineTrue()) {
+            PresenceBuffer.PresenceState state = buffered.get(user.getId());
+            if (state == null || state.online()) {
+                online.add(user);
+            }
+        }
+
+        Set<Integer> listed = online.stream().map(User::getId).collect(Collectors.toSet());
+        List<Integer> missing = buffered.entrySet().stream()
+                .filter(entry -> entry.getValue().online() && !listed.contains(entry.getKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!missing.isEmpty()) {
+            online.addAll(userRepository.findAllById(missing));
+        }
+        return online;
+    }
+
+    /**
+     * Converts the user to its DTO, including buffered presence changes.
+     */
+    public UserDTO toDTO(User user) {
+        return presenceBuffer.overlay(UserDTO.fromUser(user));
     }
 
     @Transactional
     public User create(User user) {
+        collectionVersions.bump(CollectionVersions.Kind.USERS);
         return userRepository.save(user);
     }
 
@@ -61,6 +102,15 @@ public class UserService {
             user.setLastActiveAt(LocalDateTime.now());
         }
 
+        // The explicit update wins over heartbeats still waiting to be written
+        presenceBuffer.discard(id);
+        if (Boolean.TRUE.equals(userDetails.getIsOnline())) {
+            presenceRegistry.touch(id);
+        } else {
+            presenceRegistry.remove(id);
+        }
+        userPrincipalCache.invalidate(id);
+        collectionVersions.bump(CollectionVersions.Kind.USERS);
         return userRepository.save(user);
     }
 
@@ -68,21 +118,27 @@ public class UserService {
     public void delete(Integer id) {
         User user = findById(id);
         user.setActive(false);
+        userPrincipalCache.invalidate(id);
+        collectionVersions.bump(CollectionVersions.Kind.USERS);
         userRepository.save(user);
     }
 
     @Transactional
     public void hardDelete(Integer id) {
+        presenceBuffer.discard(id);
+        presenceRegistry.remove(id);
+        userPrincipalCache.invalidate(id);
+        collectionVersions.bump(CollectionVersions.Kind.USERS);
         userRepository.deleteById(id);
     }
 
-    @Transactional
+    /**
+     * Records the status in the presence buffer; the row is written by the
+     * next flush.
+     */
     public User updateOnlineStatus(Integer id, Boolean isOnline) {
         User user = findById(id);
-        user.setIsOnline(isOnline);
-        if (isOnline) {
-            user.setLastActiveAt(LocalDateTime.now());
-        }
-        return userRepository.save(user);
+        presenceBuffer.markOnline(id, isOnline);
+        return user;
     }
 }
@@ -0,0 +1,98 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.JwtConfigProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Bounded cache of tokens whose signature has already been verified, keyed by
+ * the SHA-256 digest of the token. Entries expire after the configured TTL or
+ * at the token's own expiration, whichever comes first. Revocation is checked
+ * on every call, so a cached token stops working as soon as it is revoked.
+ */
+@Service
+@Slf4j
+public class VerifiedTokenCache {
+
+    private final TokenService tokenService;
+    private final TokenDenylist tokenDenylist;
+    private final Cache<String, TokenService.VerifiedToken> cache;
+
+    public VerifiedTokenCache(TokenService tokenService, TokenDenylist tokenDenylist, JwtConfigProperties jwtConfig,
+            MeterRegistry meterRegistry) {
+        this.tokenService = tokenService;
+        this.tokenDenylist = tokenDenylist;
+
+        long ttlNanos = jwtConfig.getCache().getTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(jwtConfig.getCache().getMaxSize())
+                .expireAfter(new Expiry<String, TokenService.VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, TokenService.VerifiedToken value, long currentTime) {
+                        if (value.expiration() == null) {
+                            return ttlNanos;
+                        }
+                        long untilTokenExpires = (value.expiration().getTime() - System.currentTimeMillis()) * 1_000_000L;
+                        return Math.max(0, Math.min(ttlNanos, untilTokenExpires));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, TokenService.VerifiedToken value, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, TokenService.VerifiedToken value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.verified-tokens");
+    }
+
+    /**
+     * Returns the verified claims of the token, checking the signature only
+     * the first time the token is seen.
+     */
+    public TokenService.VerifiedToken verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        String key = digest(token);
+        TokenService.VerifiedToken cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return tokenDenylist.isRevoked(cached.tokenId()) ? null : cached;
+        }
+
+        TokenService.VerifiedToken verifiedToken = tokenService.verify(token);
+        if (verifiedToken != null) {
+            cache.put(key, verifiedToken);
+        }
+        return verifiedToken;
+    }
+
+    private String digest(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            log.error("Error computing token digest", e);
+            throw new RuntimeException("Error computing token digest", e);
+        }
+    }
+}
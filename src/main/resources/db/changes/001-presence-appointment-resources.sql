@@ -0,0 +1,20 @@
+-- One row per (appointment, resource) so lookups by resource can use an index
+-- instead of JSON_CONTAINS over PresenceAppointments.ResourceIds.
+-- The JSON column stays the source of the API; this table is kept in sync by
+-- the PresenceAppointment entity.
+
+CREATE TABLE IF NOT EXISTS PresenceAppointmentResources (
+    AppointmentId INT NOT NULL,
+    ResourceId INT NOT NULL,
+    PRIMARY KEY (AppointmentId, ResourceId),
+    INDEX IX_PresenceAppointmentResources_ResourceId (ResourceId, AppointmentId),
+    CONSTRAINT FK_PresenceAppointmentResources_Appointment
+        FOREIGN KEY (AppointmentId) REFERENCES PresenceAppointments (Id) ON DELETE CASCADE
+);
+
+-- Backfill from the existing JSON column
+INSERT IGNORE INTO PresenceAppointmentResources (AppointmentId, ResourceId)
+SELECT a.Id, r.ResourceId
+FROM PresenceAppointments a,
+     JSON_TABLE(a.ResourceIds, '$[*]' COLUMNS (ResourceId INT PATH '$')) r
+WHERE r.ResourceId IS NOT NULL;
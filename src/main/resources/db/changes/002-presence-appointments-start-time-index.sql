@@ -0,0 +1,6 @@
+-- Supports the keyset-paginated range query: active appointments ordered by
+-- (StartTime, Id), with EndTime in the index so the overlap condition is
+-- checked without reading the row.
+
+CREATE INDEX IX_PresenceAppointments_Active_StartTime
+    ON PresenceAppointments (Active, StartTime, Id, EndTime);
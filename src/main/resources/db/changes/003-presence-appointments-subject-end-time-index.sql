@@ -0,0 +1,5 @@
+-- Supports the bulk import conflict check, which loads the appointments of a
+-- set of subjects that end after the start of the imported range.
+
+CREATE INDEX IX_PresenceAppointments_Subject_EndTime
+    ON PresenceAppointments (Subject, EndTime);
@@ -0,0 +1,13 @@
+-- Tokens revoked before their expiration (logout). Rows can be deleted once
+-- ExpiresAt has passed, since the token is rejected as expired from then on;
+-- the application purges them periodically.
+
+CREATE TABLE IF NOT EXISTS RevokedTokens (
+    TokenId VARCHAR(64) NOT NULL,
+    UserId INT NOT NULL,
+    ExpiresAt DATETIME NOT NULL,
+    RevokedAt DATETIME NOT NULL,
+    PRIMARY KEY (TokenId),
+    INDEX IX_RevokedTokens_ExpiresAt (ExpiresAt),
+    INDEX IX_RevokedTokens_RevokedAt (RevokedAt)
+);
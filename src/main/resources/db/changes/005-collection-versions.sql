@@ -0,0 +1,14 @@
+-- Version of the user, resource and appointment collections, incremented
+-- after every write commits. Each instance keeps it in memory, synced from
+-- this table, and builds the ETags of the list endpoints from it.
+
+CREATE TABLE IF NOT EXISTS CollectionVersions (
+    Kind VARCHAR(32) NOT NULL,
+    Version BIGINT NOT NULL,
+    PRIMARY KEY (Kind)
+);
+
+INSERT IGNORE INTO CollectionVersions (Kind, Version) VALUES
+    ('USERS', 0),
+    ('RESOURCES', 0),
+    ('APPOINTMENTS', 0);
@@ -0,0 +1,6 @@
+-- End of the last occurrence of each bounded recurring series (COUNT or
+-- UNTIL), so range queries skip series that are over instead of expanding
+-- every historical one. NULL for single appointments and open-ended series.
+-- Existing series are filled in by the application at startup.
+
+ALTER TABLE PresenceAppointments ADD COLUMN RecurrenceEnd DATETIME(6) NULL;
@@ -0,0 +1,4 @@
+-- Supports the presence stream's poll of the users written since the previous
+-- poll, so each instance reads only the few recently changed rows.
+
+CREATE INDEX IX_Users_LastUpdated ON Users (LastUpdated);
@@ -0,0 +1,169 @@
+package com.bluemobility.bmpresence.controller;
+
+import com.bluemobility.bmpresence.dto.UserPrincipal;
+import com.bluemobility.bmpresence.model.User;
+import com.bluemobility.bmpresence.repository.UserRepository;
+import com.bluemobility.bmpresence.service.TokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs many users in parallel against the endpoints that act on the caller
+ * and checks that every request only ever sees its own user.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AuthenticationControllerConcurrencyTests {
+
+    private static final int USERS = 64;
+    private static final int ROUNDS = 5;
+    private static final int ADMIN_ID = 1;
+    private static final String SALT = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @MockitoBean
+    private UserRepository userRepository;
+
+    private final List<String> tokens = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findById(anyInt()))
+                .thenAnswer(invocation -> Optional.of(user(invocation.getArgument(0))));
+        when(userRepository.findPrincipalById(anyInt()))
+                .thenAnswer(invocation -> {
+                    Integer id = invocation.getArgument(0);
+                    return Optional.of(new UserPrincipal(id, "user" + id, true, id == ADMIN_ID));
+                });
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        tokens.add(null);
+        for (int id = 1; id <= USERS; id++) {
+            tokens.add(tokenService.generateToken(id));
+        }
+    }
+
+    @Test
+    void currentUserIsResolvedPerRequest() throws Exception {
+        runConcurrently(id -> mockMvc.perform(get("/api/auth/current-user")
+                .header("Authorization", "Bearer " + tokens.get(id)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(id))
+                .andExpect(jsonPath("$.username").value("user" + id)));
+    }
+
+    @Test
+    void changePasswordAppliesToCallerOnly() throws Exception {
+        runConcurrently(id -> mockMvc.perform(post("/api/auth/change-password")
+                .header("Authorization", "Bearer " + tokens.get(id))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"currentPassword\":\"password" + id + "\",\"newPassword\":\"changed" + id + "\"}"))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void adminResetPasswordChecksCallerRole() throws Exception {
+        runConcurrently(id -> mockMvc.perform(post("/api/auth/admin-reset-password")
+                .header("Authorization", "Bearer " + tokens.get(id))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"userId\":" + (id % USERS + 1) + ",\"newPassword\":\"reset\"}"))
+                .andExpect(id == ADMIN_ID ? status().isOk() : status().isBadRequest()));
+    }
+
+    @Test
+    void anonymousRequestHasNoCurrentUser() throws Exception {
+        mockMvc.perform(get("/api/auth/current-user"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void runConcurrently(UserRequest request) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int id = 1; id <= USERS; id++) {
+                    int userId = id;
+                    Callable<Void> task = () -> {
+                        start.await();
+                        request.perform(userId);
+                        return null;
+                    };
+                    results.add(executor.submit(task));
+                }
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static User user(Integer id) {
+        User user = new User();
+        user.setId(id);
+        user.setName("Name" + id);
+        user.setLastName("LastName" + id);
+        user.setEmail("user" + id + "@example.com");
+        user.setUsername("user" + id);
+        user.setSalt(SALT);
+        user.setHashedPassword(legacyHash("password" + id));
+        user.setIsAdmin(id == ADMIN_ID);
+        user.setActive(true);
+        return user;
+    }
+
+    private static String legacyHash(String password) {
+        try {
+            byte[] saltBytes = Base64.getDecoder().decode(SALT);
+            byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+            byte[] saltedPassword = new byte[saltBytes.length + passwordBytes.length];
+            System.arraycopy(saltBytes, 0, saltedPassword, 0, saltBytes.length);
+            System.arraycopy(passwordBytes, 0, saltedPassword, saltBytes.length, passwordBytes.length);
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(saltedPassword));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface UserRequest {
+        void perform(int userId) throws Exception;
+    }
+}
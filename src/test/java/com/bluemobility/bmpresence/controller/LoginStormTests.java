@@ -0,0 +1,157 @@
+package com.bluemobility.bmpresence.controller;
+
+import com.bluemobility.bmpresence.model.User;
+import com.bluemobility.bmpresence.repository.UserRepository;
+import com.bluemobility.bmpresence.service.PasswordHasher;
+import com.bluemobility.bmpresence.service.TokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Floods the login endpoint with more requests than the password hashing
+ * pool accepts, against a real database and the default pool sizes, and
+ * checks that the excess is rejected with 429 while an endpoint that needs a
+ * database connection keeps answering with its usual latency.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:login-storm;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "auth.password-hashing.iterations=50000",
+        "auth.rate-limit.enabled=false" })
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LoginStormTests {
+
+    // More logins in flight than hashing threads, queue slots and connections together
+    private static final int LOGIN_CLIENTS = 96;
+    private static final int LOGINS_PER_CLIENT = 3;
+    private static final int PROBES = 200;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Integer userId;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        User user = userRepository.findByUsername("user").orElseGet(User::new);
+        user.setName("Name");
+        user.setLastName("LastName");
+        user.setEmail("user@example.com");
+        user.setUsername("user");
+        user.setSalt(passwordHasher.generateSalt());
+        user.setHashedPassword(passwordHasher.hash("password", user.getSalt()));
+        user.setIsAdmin(false);
+        user.setActive(true);
+        userId = userRepository.save(user).getId();
+
+        token = tokenService.generateToken(userId);
+    }
+
+    @Test
+    void loginStormIsShedWithoutSlowingOtherEndpoints() throws Exception {
+        long baselineP99 = p99(probe(PROBES, new AtomicBoolean(true)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(LOGIN_CLIENTS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean storming = new AtomicBoolean(true);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Integer> unexpected = Collections.synchronizedList(new ArrayList<>());
+        try {
+            List<Future<?>> logins = new ArrayList<>();
+            for (int client = 0; client < LOGIN_CLIENTS; client++) {
+                logins.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < LOGINS_PER_CLIENT; i++) {
+                        int status = mockMvc.perform(post("/api/auth/login")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"username\":\"user\",\"password\":\"password\"}"))
+                                .andReturn().getResponse().getStatus();
+                        if (status == 200) {
+                            succeeded.incrementAndGet();
+                        } else if (status == 429) {
+                            rejected.incrementAndGet();
+                        } else {
+                            unexpected.add(status);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            Future<List<Long>> probes = executor.submit(() -> {
+                start.await();
+                return probe(PROBES, storming);
+            });
+
+            start.countDown();
+            for (Future<?> login : logins) {
+                login.get(5, TimeUnit.MINUTES);
+            }
+            storming.set(false);
+            long stormP99 = p99(probes.get(5, TimeUnit.MINUTES));
+
+            assertThat(unexpected).isEmpty();
+            assertThat(succeeded.get()).isPositive();
+            assertThat(rejected.get()).isPositive();
+            // Generous bound: an endpoint waiting for a connection held by a
+            // login would wait for whole hashes
+            assertThat(stormP99).isLessThan(Math.max(baselineP99 * 20, TimeUnit.MILLISECONDS.toNanos(250)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads a user by id until {@code count} calls are done and, if
+     * {@code keepGoing} turns false, stops early. Returns the latencies.
+     */
+    private List<Long> probe(int count, AtomicBoolean keepGoing) throws Exception {
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < count && keepGoing.get(); i++) {
+            long startedAt = System.nanoTime();
+            int status = mockMvc.perform(get("/api/users/" + userId)
+                    .header("Authorization", "Bearer " + token))
+                    .andReturn().getResponse().getStatus();
+            latencies.add(System.nanoTime() - startedAt);
+            assertThat(status).isEqualTo(200);
+        }
+        return latencies;
+    }
+
+    private static long p99(List<Long> latencies) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return sorted.get(Math.max(0, (int) Math.ceil(sorted.size() * 0.99) - 1));
+    }
+}
@@ -0,0 +1,136 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.AppointmentProperties;
+import com.bluemobility.bmpresence.dto.AppointmentConflict;
+import com.bluemobility.bmpresence.model.PresenceAppointment;
+import com.bluemobility.bmpresence.repository.PresenceAppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class AppointmentConflictIndexTests {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 3, 2, 0, 0);
+
+    private AppointmentConflictIndex index;
+
+    @BeforeEach
+    void setUp() {
+        AppointmentProperties properties = new AppointmentProperties();
+        index = new AppointmentConflictIndex(mock(PresenceAppointmentRepository.class), properties,
+                new RecurrenceService(properties));
+    }
+
+    @Test
+    void findsAppointmentStartingOrEndingInWindow() {
+        index.index(appointment(1, DAY.plusHours(9), DAY.plusHours(10), null, 7));
+        index.index(appointment(2, DAY.minusHours(2), DAY.plusHours(1), null, 8));
+
+        assertThat(index.findConflict("alice", 7, DAY, DAY.plusDays(1), null)).contains(1);
+        assertThat(index.findConflict("alice", 8, DAY, DAY.plusDays(1), null)).contains(2);
+    }
+
+    @Test
+    void ignoresOtherSubjectsResourcesAndTheExcludedAppointment() {
+        index.index(appointment(1, DAY.plusHours(9), DAY.plusHours(10), null, 7));
+
+        assertThat(index.findConflict("bob", 7, DAY, DAY.plusDays(1), null)).isEmpty();
+        assertThat(index.findConflict("alice", 8, DAY, DAY.plusDays(1), null)).isEmpty();
+        assertThat(index.findConflict("alice", 7, DAY, DAY.plusDays(1), 1)).isEmpty();
+    }
+
+    @Test
+    void intervalsTouchingTheWindowEdgesDoNotConflict() {
+        // Ends exactly where the window starts
+        index.index(appointment(1, DAY.minusHours(1), DAY, null, 7));
+        // Starts exactly where the window ends
+        index.index(appointment(2, DAY.plusDays(1), DAY.plusDays(1).plusHours(1), null, 7));
+
+        assertThat(index.findConflict("alice", 7, DAY, DAY.plusDays(1), null)).isEmpty();
+        assertThat(index.findConflict("alice", 7, DAY.minusSeconds(1), DAY.plusDays(1), null)).contains(1);
+        assertThat(index.findConflict("alice", 7, DAY, DAY.plusDays(1).plusSeconds(1), null)).contains(2);
+    }
+
+    @Test
+    void inactiveAndRemovedAppointmentsDoNotConflict() {
+        PresenceAppointment cancelled = appointment(1, DAY.plusHours(9), DAY.plusHours(10), null, 7);
+        cancelled.setActive(false);
+        index.index(cancelled);
+        index.index(appointment(2, DAY.plusHours(11), DAY.plusHours(12), null, 7));
+        index.remove(2);
+
+        assertThat(index.findConflict("alice", 7, DAY, DAY.plusDays(1), null)).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void updatingAnAppointmentMovesItInTheIndex() {
+        index.index(appointment(1, DAY.plusHours(9), DAY.plusHours(10), null, 7));
+        index.index(appointment(1, DAY.plusDays(3).plusHours(9), DAY.plusDays(3).plusHours(10), null, 7));
+
+        assertThat(index.findConflict("alice", 7, DAY, DAY.plusDays(1), null)).isEmpty();
+        assertThat(index.findConflict("alice", 7, DAY.plusDays(3), DAY.plusDays(4), null)).contains(1);
+    }
+
+    @Test
+    void findsRecurringSeriesOnTheDaysItOccurs() {
+        // Mondays 9:00-10:00, starting Monday 2 March 2026
+        index.index(appointment(1, DAY.plusHours(9), DAY.plusHours(10), "FREQ=WEEKLY;BYDAY=MO", 7));
+
+        LocalDateTime nextMonday = DAY.plusWeeks(5);
+        assertThat(index.findConflict("alice", 7, nextMonday, nextMonday.plusDays(1), null)).contains(1);
+        assertThat(index.findConflict("alice", 7, nextMonday.plusDays(1), nextMonday.plusDays(2), null))
+                .isEmpty();
+        // Before the series starts
+        assertThat(index.findConflict("alice", 7, DAY.minusWeeks(1), DAY.minusWeeks(1).plusDays(1), null))
+                .isEmpty();
+    }
+
+    @Test
+    void recurringSeriesStopsAfterItsCount() {
+        index.index(appointment(1, DAY.plusHours(9), DAY.plusHours(10), "FREQ=DAILY;COUNT=3", 7));
+
+        assertThat(index.findConflict("alice", 7, DAY.plusDays(2), DAY.plusDays(3), null)).contains(1);
+        assertThat(index.findConflict("alice", 7, DAY.plusDays(3), DAY.plusDays(4), null)).isEmpty();
+    }
+
+    @Test
+    void recurringOccurrenceTouchingTheWindowEdgeDoesNotConflict() {
+        // Single occurrence 23:00-24:00 the day before, ending where the window starts
+        index.index(appointment(1, DAY.minusDays(1).plusHours(23), DAY, "FREQ=DAILY;COUNT=1", 7));
+
+        assertThat(index.findConflict("alice", 7, DAY, DAY.plusDays(1), null)).isEmpty();
+    }
+
+    @Test
+    void findConflictsReportsEveryResourceInOrder() {
+        index.index(appointment(1, DAY.plusHours(9), DAY.plusHours(10), null, 9, 3));
+        index.index(appointment(2, DAY.plusHours(14), DAY.plusHours(15), null, 5));
+
+        List<AppointmentConflict> conflicts = index.findConflicts("alice", List.of(9, 5, 3, 4), DAY,
+                DAY.plusDays(1), null);
+
+        assertThat(conflicts).containsExactly(
+                new AppointmentConflict(3, 1),
+                new AppointmentConflict(5, 2),
+                new AppointmentConflict(9, 1));
+    }
+
+    private static PresenceAppointment appointment(Integer id, LocalDateTime start, LocalDateTime end,
+            String recurrenceRule, Integer... resourceIds) {
+        PresenceAppointment appointment = new PresenceAppointment();
+        appointment.setId(id);
+        appointment.setSubject("alice");
+        appointment.setStartTime(start);
+        appointment.setEndTime(end);
+        appointment.setRecurrenceRule(recurrenceRule);
+        appointment.setResourceIds(List.of(resourceIds));
+        appointment.setActive(true);
+        return appointment;
+    }
+}
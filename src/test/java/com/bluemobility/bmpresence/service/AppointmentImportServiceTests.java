@@ -0,0 +1,174 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.dto.AppointmentImportReport;
+import com.bluemobility.bmpresence.dto.AppointmentImportResult;
+import com.bluemobility.bmpresence.dto.AppointmentImportResult.Status;
+import com.bluemobility.bmpresence.model.PresenceAppointment;
+import com.bluemobility.bmpresence.repository.PresenceAppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Imports against a real database with batches of two rows, so conflicts and
+ * failures can be checked within and across batches.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:appointment-import;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "appointments.bulk-import.batch-size=2" })
+@ActiveProfiles("test")
+class AppointmentImportServiceTests {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 3, 2, 0, 0);
+
+    @Autowired
+    private AppointmentImportService importService;
+
+    @Autowired
+    private PresenceAppointmentRepository appointmentRepository;
+
+    // Imported rows are read with SQL: H2 stores the ResourceIds bound by the
+    // import as a JSON string, which the entity cannot map back to a list
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM PresenceAppointmentResources");
+        jdbcTemplate.update("DELETE FROM PresenceAppointments");
+    }
+
+    @Test
+    void importsValidRowsAndReportsInvalidOnes() {
+        PresenceAppointment backwards = appointment("alice", 7, DAY.plusHours(10));
+        backwards.setEndTime(DAY.plusHours(9));
+
+        AppointmentImportReport report = importService.importAppointments(List.of(
+                appointment("alice", 7, DAY.plusHours(9)),
+                backwards,
+                appointment("bob", 7, DAY.plusHours(9))).iterator());
+
+        assertThat(statuses(report)).containsExactly(Status.CREATED, Status.INVALID, Status.CREATED);
+        assertThat(report.created()).isEqualTo(2);
+        assertThat(report.rejected()).isEqualTo(1);
+        assertThat(subjects()).containsExactlyInAnyOrder("alice", "bob");
+        assertThat(jdbcTemplate.queryForObject("SELECT Subject FROM PresenceAppointments WHERE Id = ?",
+                String.class, report.results().get(2).appointmentId())).isEqualTo("bob");
+    }
+
+    @Test
+    void rejectsRowsConflictingWithEarlierRowsOfTheFile() {
+        // Rows 1 and 4 are in different batches; row 3 is on another resource
+        AppointmentImportReport report = importService.importAppointments(List.of(
+                appointment("alice", 7, DAY.plusHours(9)),
+                appointment("alice", 7, DAY.plusHours(14)),
+                appointment("alice", 8, DAY.plusHours(14)),
+                appointment("alice", 7, DAY.plusHours(16))).iterator());
+
+        assertThat(statuses(report)).containsExactly(Status.CREATED, Status.CONFLICT, Status.CREATED,
+                Status.CONFLICT);
+        assertThat(report.results().get(1).message()).contains("(riga 1)");
+        // By then row 1 is committed, so it is found in the database
+        assertThat(report.results().get(3).message()).contains("risorsa 7 il giorno 2026-03-02");
+        assertThat(subjects()).containsExactlyInAnyOrder("alice", "alice");
+    }
+
+    @Test
+    void rejectsRowsConflictingWithExistingAppointments() {
+        appointmentRepository.save(appointment("alice", 7, DAY.plusHours(9)));
+        PresenceAppointment series = appointment("bob", 7, DAY.minusWeeks(2).plusHours(9));
+        series.setRecurrenceRule("FREQ=WEEKLY;BYDAY=MO");
+        appointmentRepository.save(series);
+
+        AppointmentImportReport report = importService.importAppointments(List.of(
+                appointment("alice", 7, DAY.plusHours(15)),
+                appointment("alice", 7, DAY.plusDays(1).plusHours(9)),
+                appointment("bob", 7, DAY.plusHours(15)),
+                appointment("bob", 7, DAY.plusDays(1).plusHours(15))).iterator());
+
+        assertThat(statuses(report)).containsExactly(Status.CONFLICT, Status.CREATED, Status.CONFLICT,
+                Status.CREATED);
+        assertThat(report.results().get(0).message()).doesNotContain("riga");
+        assertThat(subjects()).hasSize(4);
+    }
+
+    @Test
+    void rejectsUnsupportedRecurrenceRules() {
+        PresenceAppointment hourly = appointment("alice", 7, DAY.plusHours(9));
+        hourly.setRecurrenceRule("FREQ=HOURLY");
+        PresenceAppointment weekly = appointment("bob", 7, DAY.plusHours(9));
+        weekly.setRecurrenceRule("FREQ=WEEKLY;COUNT=3");
+
+        AppointmentImportReport report = importService.importAppointments(List.of(hourly, weekly).iterator());
+
+        assertThat(statuses(report)).containsExactly(Status.INVALID, Status.CREATED);
+        assertThat(report.results().get(0).message()).startsWith("Regola di ricorrenza non valida");
+        // Stored with the end of its third occurrence
+        assertThat(jdbcTemplate.queryForObject("SELECT RecurrenceEnd FROM PresenceAppointments WHERE Id = ?",
+                LocalDateTime.class, report.results().get(1).appointmentId()))
+                .isEqualTo(DAY.plusWeeks(2).plusHours(10));
+    }
+
+    @Test
+    void onlyTheRowsOfAFailedBatchRejectedByTheDatabaseFail() {
+        // Longer than the Subject column, so the second batch fails in the database
+        String tooLong = "x".repeat(300);
+
+        AppointmentImportReport report = importService.importAppointments(List.of(
+                appointment("alice", 7, DAY.plusHours(9)),
+                appointment("bob", 7, DAY.plusHours(9)),
+                appointment("carol", 7, DAY.plusHours(9)),
+                appointment(tooLong, 7, DAY.plusHours(9)),
+                appointment("dave", 7, DAY.plusHours(15)),
+                appointment(tooLong, 8, DAY.plusHours(9)),
+                appointment("erin", 7, DAY.plusHours(9))).iterator());
+
+        // Rows 3 and 6 are retried on their own after their batches fail
+        assertThat(statuses(report)).containsExactly(Status.CREATED, Status.CREATED, Status.CREATED,
+                Status.FAILED, Status.CREATED, Status.FAILED, Status.CREATED);
+        assertThat(report.results().get(3).appointmentId()).isNull();
+        assertThat(report.created()).isEqualTo(5);
+        assertThat(subjects()).containsExactlyInAnyOrder("alice", "bob", "carol", "dave", "erin");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PresenceAppointmentResources",
+                Integer.class)).isEqualTo(5);
+    }
+
+    @Test
+    void rowsInsertedOnRetryStillConflictWithLaterRows() {
+        String tooLong = "x".repeat(300);
+
+        AppointmentImportReport report = importService.importAppointments(List.of(
+                appointment("carol", 7, DAY.plusHours(9)),
+                appointment(tooLong, 7, DAY.plusHours(9)),
+                appointment("carol", 7, DAY.plusHours(15))).iterator());
+
+        assertThat(statuses(report)).containsExactly(Status.CREATED, Status.FAILED, Status.CONFLICT);
+        assertThat(report.results().get(2).message()).contains("risorsa 7 il giorno 2026-03-02");
+    }
+
+    private List<String> subjects() {
+        return jdbcTemplate.queryForList("SELECT Subject FROM PresenceAppointments", String.class);
+    }
+
+    private static List<Status> statuses(AppointmentImportReport report) {
+        return report.results().stream().map(AppointmentImportResult::status).toList();
+    }
+
+    private static PresenceAppointment appointment(String subject, Integer resourceId, LocalDateTime start) {
+        PresenceAppointment appointment = new PresenceAppointment();
+        appointment.setSubject(subject);
+        appointment.setStartTime(start);
+        appointment.setEndTime(start.plusHours(1));
+        appointment.setResourceIds(List.of(resourceId));
+        appointment.setActive(true);
+        return appointment;
+    }
+}
@@ -0,0 +1,178 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.AuthProperties;
+import com.bluemobility.bmpresence.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+class AuthRateLimiterTests {
+
+    // 5 requests per minute: one every 12 seconds, in bursts of up to 5
+    private static final AuthProperties.Endpoint LIMITS = new AuthProperties.Endpoint(
+            new AuthProperties.Limit(5, Duration.ofMinutes(1)),
+            new AuthProperties.Limit(3, Duration.ofMinutes(1)));
+    private static final Duration INTERVAL = Duration.ofSeconds(12);
+
+    private final AtomicLong now = new AtomicLong(Duration.ofDays(1).toNanos());
+    private AuthProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private AuthRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AuthProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new AuthRateLimiter(properties, meterRegistry, now::get);
+    }
+
+    @Test
+    void allowsABurstUpToTheCapacity() {
+        for (int i = 0; i < 5; i++) {
+            check("10.0.0.1", null);
+        }
+
+        assertThat(rejection("10.0.0.1", null)).isEqualTo(INTERVAL);
+        assertThat(count("ip", "allowed")).isEqualTo(5);
+        assertThat(count("ip", "rejected")).isEqualTo(1);
+    }
+
+    @Test
+    void retryAfterIsTheTimeUntilTheNextRequestIsAllowed() {
+        burst("10.0.0.1");
+
+        advance(Duration.ofSeconds(5));
+        assertThat(rejection("10.0.0.1", null)).isEqualTo(Duration.ofSeconds(7));
+
+        advance(Duration.ofSeconds(7).minusNanos(1));
+        assertThat(rejection("10.0.0.1", null)).isEqualTo(Duration.ofNanos(1));
+
+        advance(Duration.ofNanos(1));
+        check("10.0.0.1", null);
+        assertThat(rejection("10.0.0.1", null)).isEqualTo(INTERVAL);
+    }
+
+    @Test
+    void sustainsOneRequestPerIntervalAfterTheBurst() {
+        burst("10.0.0.1");
+
+        for (int i = 0; i < 100; i++) {
+            advance(INTERVAL);
+            check("10.0.0.1", null);
+            assertThat(rejection("10.0.0.1", null)).isEqualTo(INTERVAL);
+        }
+    }
+
+    @Test
+    void fasterThanTheRateIsRejectedHalfTheTime() {
+        burst("10.0.0.1");
+
+        int allowed = 0;
+        for (int i = 0; i < 100; i++) {
+            advance(INTERVAL.dividedBy(2));
+            if (tryCheck("10.0.0.1")) {
+                allowed++;
+            }
+        }
+
+        assertThat(allowed).isEqualTo(50);
+    }
+
+    @Test
+    void idleKeyRefillsToAFullBurst() {
+        burst("10.0.0.1");
+
+        advance(Duration.ofMinutes(1));
+
+        for (int i = 0; i < 5; i++) {
+            check("10.0.0.1", null);
+        }
+        assertThat(rejection("10.0.0.1", null)).isEqualTo(INTERVAL);
+    }
+
+    @Test
+    void keyDroppedAfterTheIdleTimeoutStartsWithNoMoreThanAFullBurst() {
+        burst("10.0.0.1");
+
+        advance(properties.getRateLimit().getIdleTimeout().plusMinutes(1));
+
+        burst("10.0.0.1");
+        assertThat(rejection("10.0.0.1", null)).isEqualTo(INTERVAL);
+    }
+
+    @Test
+    void limitsEachIpSeparately() {
+        burst("10.0.0.1");
+
+        assertThatNoException().isThrownBy(() -> check("10.0.0.2", null));
+    }
+
+    @Test
+    void limitsAUsernameAcrossIps() {
+        check("10.0.0.1", "Alice");
+        check("10.0.0.2", "alice ");
+        check("10.0.0.3", "ALICE");
+
+        assertThat(rejection("10.0.0.4", "alice")).isEqualTo(Duration.ofSeconds(20));
+        assertThat(count("username", "rejected")).isEqualTo(1);
+        // The IP limit of the rejected request was still counted
+        assertThat(count("ip", "allowed")).isEqualTo(4);
+    }
+
+    @Test
+    void zeroCapacityOrDisabledLimiterAllowsEverything() {
+        AuthProperties.Endpoint unlimited = new AuthProperties.Endpoint(
+                new AuthProperties.Limit(0, Duration.ofMinutes(1)),
+                new AuthProperties.Limit(0, Duration.ofMinutes(1)));
+        for (int i = 0; i < 100; i++) {
+            limiter.check("login", unlimited, "10.0.0.1", "alice");
+        }
+
+        properties.getRateLimit().setEnabled(false);
+        for (int i = 0; i < 100; i++) {
+            check("10.0.0.1", "alice");
+        }
+    }
+
+    private void burst(String clientIp) {
+        for (int i = 0; i < 5; i++) {
+            check(clientIp, null);
+        }
+    }
+
+    private void check(String clientIp, String username) {
+        limiter.check("login", LIMITS, clientIp, username);
+    }
+
+    private boolean tryCheck(String clientIp) {
+        try {
+            check(clientIp, null);
+            return true;
+        } catch (RateLimitExceededException e) {
+            return false;
+        }
+    }
+
+    private Duration rejection(String clientIp, String username) {
+        RateLimitExceededException rejected = catchThrowableOfType(RateLimitExceededException.class,
+                () -> check(clientIp, username));
+        assertThat(rejected).isNotNull();
+        return rejected.getRetryAfter();
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+
+    private double count(String key, String outcome) {
+        return meterRegistry.counter("auth.rate-limit.requests",
+                "endpoint", "login", "key", key, "outcome", outcome).count();
+    }
+}
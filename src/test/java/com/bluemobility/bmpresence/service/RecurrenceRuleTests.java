@@ -0,0 +1,200 @@
+package com.bluemobility.bmpresence.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+
+class RecurrenceRuleTests {
+
+    // Monday 2 March 2026, 9:00
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 2, 9, 0);
+
+    @Test
+    void dailyRepeatsEveryIntervalDays() {
+        assertThat(first("FREQ=DAILY;INTERVAL=2", START, 3)).containsExactly(
+                START, START.plusDays(2), START.plusDays(4));
+    }
+
+    @Test
+    void weeklyRepeatsOnEveryDayOfTheWeek() {
+        assertThat(first("FREQ=WEEKLY;BYDAY=MO,WE", START, 4)).containsExactly(
+                START, START.plusDays(2), START.plusWeeks(1), START.plusWeeks(1).plusDays(2));
+    }
+
+    @Test
+    void weeklyWithoutDaysRepeatsOnTheStartDay() {
+        assertThat(first("FREQ=WEEKLY;INTERVAL=2", START, 3)).containsExactly(
+                START, START.plusWeeks(2), START.plusWeeks(4));
+    }
+
+    @Test
+    void monthlyRepeatsOnTheMonthDaySkippingShortMonths() {
+        LocalDateTime start = LocalDateTime.of(2026, 1, 31, 9, 0);
+
+        assertThat(first("FREQ=MONTHLY", start, 3)).containsExactly(
+                start, LocalDateTime.of(2026, 3, 31, 9, 0), LocalDateTime.of(2026, 5, 31, 9, 0));
+    }
+
+    @Test
+    void monthlyRepeatsOnOrdinalWeekdays() {
+        // Second Tuesday and last Friday of the month
+        assertThat(first("FREQ=MONTHLY;BYDAY=2TU,-1FR", START, 4)).containsExactly(
+                LocalDateTime.of(2026, 3, 10, 9, 0),
+                LocalDateTime.of(2026, 3, 27, 9, 0),
+                LocalDateTime.of(2026, 4, 14, 9, 0),
+                LocalDateTime.of(2026, 4, 24, 9, 0));
+    }
+
+    @Test
+    void monthlyRepeatsOnNegativeMonthDays() {
+        assertThat(first("FREQ=MONTHLY;BYMONTHDAY=-1", START, 3)).containsExactly(
+                LocalDateTime.of(2026, 3, 31, 9, 0),
+                LocalDateTime.of(2026, 4, 30, 9, 0),
+                LocalDateTime.of(2026, 5, 31, 9, 0));
+    }
+
+    @Test
+    void yearlyRepeatsOnTheStartDate() {
+        assertThat(first("FREQ=YEARLY", START, 2)).containsExactly(START, START.plusYears(1));
+    }
+
+    @Test
+    void yearlyWithMonthAndDayRepeatsInThatMonth() {
+        // Last Sunday of October
+        assertThat(first("FREQ=YEARLY;BYMONTH=10;BYDAY=-1SU", START, 2)).containsExactly(
+                LocalDateTime.of(2026, 10, 25, 9, 0),
+                LocalDateTime.of(2027, 10, 31, 9, 0));
+    }
+
+    @Test
+    void yearlyWithDayAndNoMonthCountsWithinTheYear() {
+        // 20th Monday of the year, not of the start month
+        assertThat(first("FREQ=YEARLY;BYDAY=20MO", START, 2)).containsExactly(
+                LocalDateTime.of(2026, 5, 18, 9, 0),
+                LocalDateTime.of(2027, 5, 17, 9, 0));
+        assertThat(first("FREQ=YEARLY;BYDAY=-1MO", START, 1)).containsExactly(
+                LocalDateTime.of(2026, 12, 28, 9, 0));
+    }
+
+    @Test
+    void yearlyWithDayAndNoMonthRepeatsEveryWeekOfTheYear() {
+        List<LocalDateTime> mondays = first("FREQ=YEARLY;BYDAY=MO;UNTIL=20261231", START, 100);
+
+        assertThat(mondays).hasSize(44).first().isEqualTo(START);
+        assertThat(mondays).last().isEqualTo(LocalDateTime.of(2026, 12, 28, 9, 0));
+    }
+
+    @Test
+    void yearlyWithMonthDayAndNoMonthRepeatsEveryMonth() {
+        assertThat(first("FREQ=YEARLY;BYMONTHDAY=15", START, 2)).containsExactly(
+                LocalDateTime.of(2026, 3, 15, 9, 0),
+                LocalDateTime.of(2026, 4, 15, 9, 0));
+    }
+
+    @Test
+    void countStopsTheSeries() {
+        assertThat(first("FREQ=DAILY;COUNT=3", START, 10)).containsExactly(
+                START, START.plusDays(1), START.plusDays(2));
+    }
+
+    @Test
+    void dateOnlyUntilIncludesTheWholeDay() {
+        assertThat(first("FREQ=DAILY;UNTIL=20260304", START, 10)).containsExactly(
+                START, START.plusDays(1), START.plusDays(2));
+    }
+
+    @Test
+    void dateTimeUntilIsInclusive() {
+        assertThat(first("FREQ=WEEKLY;UNTIL=20260316T090000Z", START, 10)).containsExactly(
+                START, START.plusWeeks(1), START.plusWeeks(2));
+        assertThat(first("FREQ=WEEKLY;UNTIL=20260316T085959", START, 10)).containsExactly(
+                START, START.plusWeeks(1));
+    }
+
+    @Test
+    void bySetPosPicksWithinEachPeriod() {
+        // Last working day of the month
+        assertThat(first("FREQ=MONTHLY;BYDAY=MO,TU,WE,TH,FR;BYSETPOS=-1", START, 3)).containsExactly(
+                LocalDateTime.of(2026, 3, 31, 9, 0),
+                LocalDateTime.of(2026, 4, 30, 9, 0),
+                LocalDateTime.of(2026, 5, 29, 9, 0));
+        // First and second working day of the month
+        assertThat(first("FREQ=MONTHLY;BYDAY=MO,TU,WE,TH,FR;BYSETPOS=1,2", START, 4)).containsExactly(
+                START,
+                LocalDateTime.of(2026, 3, 3, 9, 0),
+                LocalDateTime.of(2026, 4, 1, 9, 0),
+                LocalDateTime.of(2026, 4, 2, 9, 0));
+    }
+
+    @Test
+    void iteratorSkipsPeriodsBeforeNotBefore() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,TH");
+        LocalDateTime notBefore = START.plusYears(50);
+
+        Iterator<LocalDateTime> skipping = rule.iterator(START, notBefore);
+        LocalDateTime first = skipping.next();
+
+        // At most one period of occurrences before notBefore is kept
+        assertThat(first).isBefore(notBefore).isAfter(notBefore.minusWeeks(4));
+        // Same occurrences as walking the series from its start
+        List<LocalDateTime> fromStart = new ArrayList<>();
+        Iterator<LocalDateTime> walking = rule.iterator(START);
+        while (fromStart.size() < 4) {
+            LocalDateTime occurrence = walking.next();
+            if (!occurrence.isBefore(first)) {
+                fromStart.add(occurrence);
+            }
+        }
+        assertThat(List.of(first, skipping.next(), skipping.next(), skipping.next()))
+                .containsExactlyElementsOf(fromStart);
+    }
+
+    @Test
+    void iteratorDoesNotSkipPeriodsWithCount() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY;COUNT=2");
+
+        assertThat(rule.iterator(START, START.plusDays(10)).next()).isEqualTo(START);
+    }
+
+    @Test
+    void acceptsRulePrefixAndWeekStart() {
+        assertThat(first("RRULE:FREQ=DAILY;WKST=MO;COUNT=1", START, 10)).containsExactly(START);
+        assertThatNoException().isThrownBy(() -> RecurrenceRule.parse("FREQ=WEEKLY;WKST=SU;BYDAY=MO"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "FREQ=YEARLY;BYYEARDAY=100",
+            "FREQ=YEARLY;BYWEEKNO=20",
+            "FREQ=DAILY;BYHOUR=9,17",
+            "FREQ=DAILY;BYMINUTE=30",
+            "FREQ=DAILY;BYSECOND=0",
+            "FREQ=DAILY;X-CUSTOM=1",
+            "FREQ=HOURLY",
+            "FREQ=WEEKLY;BYDAY=1MO",
+            "FREQ=MONTHLY;BYDAY=6MO",
+            "FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,SU;WKST=SU",
+            "FREQ=DAILY;INTERVAL=0",
+            "INTERVAL=2" })
+    void rejectsUnsupportedRules(String rule) {
+        assertThatIllegalArgumentException().isThrownBy(() -> RecurrenceRule.parse(rule));
+    }
+
+    private static List<LocalDateTime> first(String rule, LocalDateTime start, int limit) {
+        List<LocalDateTime> occurrences = new ArrayList<>();
+        Iterator<LocalDateTime> iterator = RecurrenceRule.parse(rule).iterator(start);
+        while (iterator.hasNext() && occurrences.size() < limit) {
+            occurrences.add(iterator.next());
+        }
+        return occurrences;
+    }
+}
@@ -0,0 +1,130 @@
+package com.bluemobility.bmpresence.service;
+
+import com.bluemobility.bmpresence.config.JwtConfigProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenDenylistTests {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void everyAddedIdIsRevokedEvenBeyondTheExpectedEntries() {
+        TokenDenylist denylist = denylist(1_000);
+        List<String> ids = ids(20_000);
+
+        ids.forEach(id -> denylist.add(id, NOW + 60_000));
+
+        assertThat(ids).allMatch(denylist::isRevoked);
+        assertThat(denylist.size()).isEqualTo(ids.size());
+    }
+
+    @Test
+    void idsNeverAddedAreNotRevoked() {
+        TokenDenylist denylist = denylist(1_000);
+        ids(1_000).forEach(id -> denylist.add(id, NOW + 60_000));
+
+        // Filter false positives are answered by the exact set
+        assertThat(ids(20_000)).noneMatch(denylist::isRevoked);
+        assertThat(denylist.isRevoked(null)).isFalse();
+    }
+
+    @Test
+    void purgeDropsOnlyExpiredIds() {
+        TokenDenylist denylist = denylist(1_000);
+        denylist.add("expired", NOW - 1);
+        denylist.add("expiring-now", NOW);
+        denylist.add("valid", NOW + 60_000);
+
+        assertThat(denylist.purgeExpired(NOW)).isEqualTo(1);
+
+        assertThat(denylist.isRevoked("expired")).isFalse();
+        assertThat(denylist.isRevoked("expiring-now")).isTrue();
+        assertThat(denylist.isRevoked("valid")).isTrue();
+        assertThat(denylist.size()).isEqualTo(2);
+    }
+
+    @Test
+    void revokingAgainKeepsTheLaterExpiration() {
+        TokenDenylist denylist = denylist(1_000);
+        denylist.add("token", NOW + 60_000);
+        denylist.add("token", NOW - 60_000);
+
+        assertThat(denylist.purgeExpired(NOW)).isZero();
+        assertThat(denylist.isRevoked("token")).isTrue();
+    }
+
+    @Test
+    void rebuiltFilterKeepsEveryRemainingIdAndAcceptsNewOnes() {
+        TokenDenylist denylist = denylist(1_000);
+        List<String> expired = ids(5_000);
+        List<String> remaining = ids(5_000);
+        expired.forEach(id -> denylist.add(id, NOW - 1));
+        remaining.forEach(id -> denylist.add(id, NOW + 60_000));
+
+        assertThat(denylist.purgeExpired(NOW)).isEqualTo(expired.size());
+        List<String> added = ids(5_000);
+        added.forEach(id -> denylist.add(id, NOW + 60_000));
+
+        assertThat(remaining).allMatch(denylist::isRevoked);
+        assertThat(added).allMatch(denylist::isRevoked);
+        assertThat(expired).noneMatch(denylist::isRevoked);
+    }
+
+    @Test
+    void idsAddedDuringRebuildsAreNotLost() throws Exception {
+        TokenDenylist denylist = denylist(100);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        AtomicBoolean adding = new AtomicBoolean(true);
+        try {
+            List<Future<List<String>>> writers = new ArrayList<>();
+            for (int writer = 0; writer < 2; writer++) {
+                writers.add(executor.submit(() -> {
+                    List<String> ids = ids(20_000);
+                    ids.forEach(id -> denylist.add(id, NOW + 60_000));
+                    return ids;
+                }));
+            }
+            Future<?> purger = executor.submit(() -> {
+                while (adding.get()) {
+                    denylist.purgeExpired(NOW);
+                }
+            });
+
+            List<String> added = new ArrayList<>();
+            for (Future<List<String>> writer : writers) {
+                added.addAll(writer.get(1, TimeUnit.MINUTES));
+            }
+            adding.set(false);
+            purger.get(1, TimeUnit.MINUTES);
+
+            assertThat(added).allMatch(denylist::isRevoked);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static TokenDenylist denylist(int expectedEntries) {
+        JwtConfigProperties properties = new JwtConfigProperties();
+        properties.getRevocation().setExpectedEntries(expectedEntries);
+        return new TokenDenylist(properties);
+    }
+
+    private static List<String> ids(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        return ids;
+    }
+}